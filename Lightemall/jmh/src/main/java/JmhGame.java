@@ -0,0 +1,94 @@
+import java.util.Random;
+import javalib.worldimages.Posn;
+
+//represents a game of LightEmAll set up for one of the benchmarks in
+//lightemall.jmh, and the operations they time on it
+public class JmhGame implements lightemall.jmh.Game {
+  // the width and height in pixels of the window larger boards are drawn in
+  static final int WINDOW = 1200;
+
+  LightEmAll game;
+  // the middle of random tiles, which onMouseClicked cycles through
+  Posn[] clicks;
+  // the number of clicks and scenes so far
+  int calls;
+
+  public JmhGame() {
+    this.game = null;
+    this.clicks = null;
+    this.calls = 0;
+  }
+
+  //EFFECT: creates a game of the given size, generated and powered for the
+  //        operations that play or draw it, drawn into a raster, or through a
+  //        viewport the size of a window if the board is larger than one
+  public void setUp(String operation, int size) {
+    this.game = new LightEmAll(size, size, new Random(size));
+    PuzzleEngine engine = this.game.engine;
+    engine.initBoard();
+    if (!operation.equals("initBoard") && !operation.equals("createMSTWorklist")) {
+      engine.buildMST(engine.board);
+      if (!operation.equals("buildMST")) {
+        engine.visualiseConnections();
+        engine.randRotateBoard();
+      }
+    }
+    if (operation.equals("makeScene") && size * 30 > WINDOW) {
+      this.game.useViewport(WINDOW, WINDOW);
+    } else if (operation.equals("makeScene")) {
+      this.game.useRaster();
+    }
+    Random rand = new Random(size);
+    this.clicks = new Posn[1024];
+    for (int i = 0; i < this.clicks.length; i++) {
+      this.clicks[i] = new Posn(rand.nextInt(size) * 30 + 15, rand.nextInt(size) * 30 + 15);
+    }
+    this.calls = 0;
+  }
+
+  public long initBoard() {
+    this.game.engine.initBoard();
+    return this.game.engine.board.cells[0];
+  }
+
+  public long createMSTWorklist() {
+    PuzzleEngine engine = this.game.engine;
+    return new KruskalGenerator().worklist(engine.board, engine.rand).size;
+  }
+
+  public long buildMST() {
+    PuzzleEngine engine = this.game.engine;
+    engine.mst.size = 0;
+    engine.buildMST(engine.board);
+    return engine.mst.weight[0];
+  }
+
+  public long visualiseConnections() {
+    this.game.engine.visualiseConnections();
+    return this.game.engine.board.matched;
+  }
+
+  public long randRotateBoard() {
+    this.game.engine.randRotateBoard();
+    return this.game.engine.power.reached;
+  }
+
+  public boolean hasPath() {
+    PuzzleEngine engine = this.game.engine;
+    return engine.hasPath(engine.board.index(engine.powerRow, engine.powerCol));
+  }
+
+  public long onMouseClicked() {
+    this.calls += 1;
+    this.game.onMouseClicked(this.clicks[this.calls & (this.clicks.length - 1)], "LeftButton");
+    return this.game.engine.power.reached;
+  }
+
+  //draws the scene, then turns a tile so the next frame has something to redraw
+  public Object makeScene() {
+    Object scene = this.game.makeScene();
+    this.calls += 1;
+    this.game.engine.rotate(this.calls % this.game.engine.board.cells.length);
+    return scene;
+  }
+}
@@ -0,0 +1,82 @@
+package lightemall.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+//represents the stages of generating, powering and drawing a game, timed on
+//square boards from 8 to 2000 tiles a side; run with -prof gc for the bytes
+//each call allocates
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BoardBenchmark {
+  @Param({"8", "32", "128", "512", "2000"})
+  int size;
+
+  Game game;
+
+  //EFFECT: sets up a game for the benchmark about to run, named after the
+  //        operation it times
+  @Setup(Level.Trial)
+  public void setUp(BenchmarkParams params) throws ReflectiveOperationException {
+    String name = params.getBenchmark();
+    this.game = (Game) Class.forName("JmhGame").getDeclaredConstructor().newInstance();
+    this.game.setUp(name.substring(name.lastIndexOf('.') + 1), this.size);
+  }
+
+  @Benchmark
+  public void initBoard(Blackhole bh) {
+    bh.consume(this.game.initBoard());
+  }
+
+  @Benchmark
+  public void createMSTWorklist(Blackhole bh) {
+    bh.consume(this.game.createMSTWorklist());
+  }
+
+  @Benchmark
+  public void buildMST(Blackhole bh) {
+    bh.consume(this.game.buildMST());
+  }
+
+  @Benchmark
+  public void visualiseConnections(Blackhole bh) {
+    bh.consume(this.game.visualiseConnections());
+  }
+
+  @Benchmark
+  public void randRotateBoard(Blackhole bh) {
+    bh.consume(this.game.randRotateBoard());
+  }
+
+  @Benchmark
+  public void hasPath(Blackhole bh) {
+    bh.consume(this.game.hasPath());
+  }
+
+  @Benchmark
+  public void onMouseClicked(Blackhole bh) {
+    bh.consume(this.game.onMouseClicked());
+  }
+
+  @Benchmark
+  public void makeScene(Blackhole bh) {
+    bh.consume(this.game.makeScene());
+  }
+}
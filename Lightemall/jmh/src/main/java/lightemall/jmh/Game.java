@@ -0,0 +1,30 @@
+package lightemall.jmh;
+
+//represents a game of LightEmAll as the benchmarks see it: JMH cannot run
+//benchmarks in the default package the game lives in, and code in a package
+//cannot name the game's classes, so the game is reached through this
+//interface, implemented by JmhGame in the default package
+public interface Game {
+  //EFFECT: sets up a square game of the given size ready for the named
+  //        operation, as a player would find it before doing it
+  void setUp(String operation, int size);
+
+  //each of these runs the operation of the same name once and returns
+  //something it produced, for the benchmark to consume
+  //EFFECT: changes the game as the operation does
+  long initBoard();
+
+  long createMSTWorklist();
+
+  long buildMST();
+
+  long visualiseConnections();
+
+  long randRotateBoard();
+
+  boolean hasPath();
+
+  long onMouseClicked();
+
+  Object makeScene();
+}
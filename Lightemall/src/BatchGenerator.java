@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import tester.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+//represents something that takes generated boards one at a time, in order
+interface BoardConsumer {
+  //takes the board with the given index in its batch
+  void accept(int index, PackedBoard board);
+}
+
+//represents a generator of batches of puzzles of one size, made in parallel
+//from one master seed; every board draws from its own random stream, split
+//from the master in board order, so a batch is the same on any number of threads
+class BatchGenerator {
+  // the number of boards generated ahead of the consumer, per thread
+  static final int AHEAD = 4;
+
+  int width;
+  int height;
+
+  BatchGenerator(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  //generates count boards from the master seed on the pool, handing each to
+  //the consumer in index order as soon as it and every earlier board is done;
+  //only a few boards per thread are held at a time
+  //EFFECT: calls the consumer once per board
+  void generate(ForkJoinPool pool, int count, long masterSeed, BoardConsumer consumer) {
+    SplittableRandom master = new SplittableRandom(masterSeed);
+    ArrayDeque<ForkJoinTask<PackedBoard>> pending = new ArrayDeque<ForkJoinTask<PackedBoard>>();
+    int window = AHEAD * pool.getParallelism();
+    int delivered = 0;
+    for (int i = 0; i < count; i++) {
+      if (pending.size() == window) {
+        consumer.accept(delivered, pending.poll().join());
+        delivered += 1;
+      }
+      pending.add(pool.submit(new GenerateTask(this, master.split())));
+    }
+    while (!pending.isEmpty()) {
+      consumer.accept(delivered, pending.poll().join());
+      delivered += 1;
+    }
+  }
+
+  //returns a scrambled board generated from the given random stream
+  PackedBoard board(SplittableRandom random) {
+    PuzzleEngine engine = new PuzzleEngine(this.width, this.height, new SplitRandom(random));
+    engine.generate();
+    return engine.board;
+  }
+}
+
+//represents the generation of one board of a batch
+class GenerateTask extends RecursiveTask<PackedBoard> {
+  static final long serialVersionUID = 1L;
+
+  BatchGenerator generator;
+  SplittableRandom random;
+
+  GenerateTask(BatchGenerator generator, SplittableRandom random) {
+    this.generator = generator;
+    this.random = random;
+  }
+
+  //returns the generated board
+  protected PackedBoard compute() {
+    return this.generator.board(this.random);
+  }
+}
+
+//represents a Random that draws its bits from a SplittableRandom, so the
+//generation code written against Random can run on a split stream
+class SplitRandom extends Random {
+  static final long serialVersionUID = 1L;
+
+  SplittableRandom source;
+
+  SplitRandom(SplittableRandom source) {
+    this.source = source;
+  }
+
+  //returns the next random bits from the source
+  protected int next(int bits) {
+    return this.source.nextInt() >>> (32 - bits);
+  }
+}
+
+//represents a consumer that keeps every board it is given, for testing
+class BoardList implements BoardConsumer {
+  ArrayList<Integer> indices;
+  ArrayList<PackedBoard> boards;
+
+  BoardList() {
+    this.indices = new ArrayList<Integer>();
+    this.boards = new ArrayList<PackedBoard>();
+  }
+
+  //EFFECT: adds the board and its index to the lists
+  public void accept(int index, PackedBoard board) {
+    this.indices.add(index);
+    this.boards.add(board);
+  }
+}
+
+//examples class for testing
+class ExamplesBatchGenerator {
+  BatchGenerator generator;
+  ForkJoinPool single;
+  ForkJoinPool triple;
+
+  //initialises data
+  void initData() {
+    this.generator = new BatchGenerator(6, 4);
+    this.single = new ForkJoinPool(1);
+    this.triple = new ForkJoinPool(3);
+  }
+
+  //test for generate
+  void testGenerate(Tester t) {
+    this.initData();
+    BoardList first = new BoardList();
+    BoardList second = new BoardList();
+    this.generator.generate(this.single, 30, 7, first);
+    this.generator.generate(this.triple, 30, 7, second);
+    t.checkExpect(first.indices.size(), 30);
+    t.checkExpect(first.indices.get(0), 0);
+    t.checkExpect(first.indices.get(29), 29);
+    t.checkExpect(second.indices, first.indices);
+    // the same boards come out on any number of threads
+    for (int i = 0; i < 30; i++) {
+      t.checkExpect(second.boards.get(i).cells, first.boards.get(i).cells);
+    }
+    t.checkExpect(Arrays.equals(first.boards.get(0).cells, first.boards.get(1).cells), false);
+    BoardList other = new BoardList();
+    this.generator.generate(this.triple, 1, 8, other);
+    t.checkExpect(Arrays.equals(other.boards.get(0).cells, first.boards.get(0).cells), false);
+    this.single.shutdown();
+    this.triple.shutdown();
+  }
+
+  //test for board
+  void testBoard(Tester t) {
+    this.initData();
+    PackedBoard board = this.generator.board(new SplittableRandom(3));
+    t.checkExpect(board.width, 6);
+    t.checkExpect(board.height, 4);
+    t.checkExpect(board.matched + board.dangling > 0, true);
+    t.checkExpect(board.cells, this.generator.board(new SplittableRandom(3)).cells);
+    t.checkExpect(new GenerateTask(this.generator, new SplittableRandom(3)).compute().cells,
+        board.cells);
+  }
+
+  //test for SplitRandom
+  void testSplitRandom(Tester t) {
+    Random random = new SplitRandom(new SplittableRandom(5));
+    Random same = new SplitRandom(new SplittableRandom(5));
+    for (int i = 0; i < 10; i++) {
+      int value = random.nextInt(GridEdges.MAX_WEIGHT);
+      t.checkExpect(value >= 0 && value < GridEdges.MAX_WEIGHT, true);
+      t.checkExpect(same.nextInt(GridEdges.MAX_WEIGHT), value);
+    }
+  }
+}
@@ -0,0 +1,226 @@
+import tester.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+//represents the passes over every tile of a board, done on eight tiles at a
+//time: the cells are read as longs, one tile to a byte, and each byte is
+//worked on by masks and shifts that cannot carry into its neighbours; the
+//tiles past the last whole long are done one at a time
+class BoardKernels {
+  // reads and writes eight cells as a long, the first cell in the low byte
+  static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  // the low bit, and the connection bits, of every byte
+  static final long ONES = 0x0101010101010101L;
+  static final long NIBBLES = 0x0F0F0F0F0F0F0F0FL;
+
+  //returns the eight cells starting at the given index as a long
+  static long word(byte[] cells, int index) {
+    return (long) LONGS.get(cells, index);
+  }
+
+  //EFFECT: turns off the given bits of every cell
+  static void clearBits(byte[] cells, int bits) {
+    long keep = ~((bits & 0xFF) * ONES);
+    int i = 0;
+    for (; i + 8 <= cells.length; i += 8) {
+      LONGS.set(cells, i, (long) LONGS.get(cells, i) & keep);
+    }
+    for (; i < cells.length; i++) {
+      cells[i] &= ~bits;
+    }
+  }
+
+  //returns the index of the first cell from the given one on that has any of
+  //the given bits, or the number of cells if there is none
+  static int next(byte[] cells, int from, int bits) {
+    long wanted = (bits & 0xFF) * ONES;
+    int i = from;
+    for (; i + 8 <= cells.length; i += 8) {
+      long found = (long) LONGS.get(cells, i) & wanted;
+      if (found != 0) {
+        return i + (Long.numberOfTrailingZeros(found) >> 3);
+      }
+    }
+    for (; i < cells.length; i++) {
+      if ((cells[i] & bits) != 0) {
+        return i;
+      }
+    }
+    return cells.length;
+  }
+
+  //rotates the wires of every cell clockwise by its own number of turns,
+  //from 0 to 3; all three rotations of eight cells are made at once, and
+  //each cell picks its own through a mask of the cells with its number
+  //EFFECT: updates the connection bits of every cell
+  static void rotateAll(byte[] cells, byte[] turns) {
+    int i = 0;
+    for (; i + 8 <= cells.length; i += 8) {
+      long cell = (long) LONGS.get(cells, i);
+      long turn = (long) LONGS.get(turns, i);
+      long wires = cell & NIBBLES;
+      long low = turn & ONES;
+      long high = (turn >>> 1) & ONES;
+      // 0xFF in every byte whose tile turns once, twice or three times
+      long once = (low & ~high) * 0xFF;
+      long twice = (high & ~low) * 0xFF;
+      long thrice = (low & high) * 0xFF;
+      long turnedOnce = ((wires << 1) & 0x0E0E0E0E0E0E0E0EL)
+          | ((wires >>> 3) & ONES);
+      long turnedTwice = ((wires << 2) & 0x0C0C0C0C0C0C0C0CL)
+          | ((wires >>> 2) & 0x0303030303030303L);
+      long turnedThrice = ((wires << 3) & 0x0808080808080808L)
+          | ((wires >>> 1) & 0x0707070707070707L);
+      long turned = (wires & ~(once | twice | thrice))
+          | (turnedOnce & once) | (turnedTwice & twice) | (turnedThrice & thrice);
+      LONGS.set(cells, i, (cell & ~NIBBLES) | turned);
+    }
+    for (; i < cells.length; i++) {
+      int cell = cells[i];
+      cells[i] = (byte) ((cell & ~PackedBoard.WIRES)
+          | PackedBoard.rotateWires(cell & PackedBoard.WIRES, turns[i]));
+    }
+  }
+
+  //returns the number of wire ends on the board, the connection bits of
+  //eight cells counted with one bit count
+  static int countEnds(byte[] cells) {
+    int ends = 0;
+    int i = 0;
+    for (; i + 8 <= cells.length; i += 8) {
+      ends += Long.bitCount((long) LONGS.get(cells, i) & NIBBLES);
+    }
+    for (; i < cells.length; i++) {
+      ends += Integer.bitCount(cells[i] & PackedBoard.WIRES);
+    }
+    return ends;
+  }
+
+  //returns the number of neighbouring pairs of cells whose wires meet, on a
+  //board of the given width: each cell's right wire is lined up with the
+  //left wire of the cell after it, and its bottom wire with the top wire of
+  //the cell a row below, by reading the longs one cell and one row further on
+  static int countMatched(byte[] cells, int width) {
+    int n = cells.length;
+    int matched = 0;
+    int i = 0;
+    for (; i + 9 <= n; i += 8) {
+      long here = (long) LONGS.get(cells, i);
+      long right = (long) LONGS.get(cells, i + 1);
+      matched += Long.bitCount((here >>> 2) & right & ONES);
+    }
+    for (; i + 1 < n; i++) {
+      if ((cells[i] & PackedBoard.RIGHT) != 0 && (cells[i + 1] & PackedBoard.LEFT) != 0) {
+        matched += 1;
+      }
+    }
+    // the pairs counted from the end of one row to the start of the next are not neighbours
+    for (int end = width - 1; end + 1 < n; end += width) {
+      if ((cells[end] & PackedBoard.RIGHT) != 0 && (cells[end + 1] & PackedBoard.LEFT) != 0) {
+        matched -= 1;
+      }
+    }
+    for (i = 0; i + width + 8 <= n; i += 8) {
+      long here = (long) LONGS.get(cells, i);
+      long below = (long) LONGS.get(cells, i + width);
+      matched += Long.bitCount((here >>> 3) & (below >>> 1) & ONES);
+    }
+    for (; i + width < n; i++) {
+      if ((cells[i] & PackedBoard.BOTTOM) != 0 && (cells[i + width] & PackedBoard.TOP) != 0) {
+        matched += 1;
+      }
+    }
+    return matched;
+  }
+}
+
+//examples class for testing
+class ExamplesBoardKernels {
+  // boards of random bits whose sizes leave a tail after the last whole long,
+  // with their links counted tile by tile as the bits were set
+  PackedBoard small;
+  PackedBoard large;
+
+  //initialises a 3x3 board, smaller than a long, and a 37x23 board
+  void initData() {
+    this.small = this.randomBoard(3, 3, new Random(1));
+    this.large = this.randomBoard(37, 23, new Random(2));
+  }
+
+  //returns a board of the given size with random bits in every tile
+  PackedBoard randomBoard(int width, int height, Random rand) {
+    PackedBoard board = new PackedBoard(width, height);
+    for (int i = 0; i < board.cells.length; i++) {
+      board.set(i, rand.nextInt(64));
+    }
+    return board;
+  }
+
+  //test for word
+  void testWord(Tester t) {
+    byte[] cells = new byte[] {1, 2, 3, 4, 5, 6, 7, (byte) 0x80, 9};
+    t.checkExpect(BoardKernels.word(cells, 0), 0x8007060504030201L);
+    t.checkExpect(BoardKernels.word(cells, 1), 0x0980070605040302L);
+  }
+
+  //test for clearBits
+  void testClearBits(Tester t) {
+    this.initData();
+    BoardKernels.clearBits(this.large.cells, PackedBoard.POWERED | PackedBoard.TOP);
+    t.checkExpect(BoardKernels.next(this.large.cells, 0, PackedBoard.POWERED | PackedBoard.TOP),
+        851);
+    byte[] expected = this.small.cells.clone();
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] &= ~PackedBoard.POWERED;
+    }
+    BoardKernels.clearBits(this.small.cells, PackedBoard.POWERED);
+    t.checkExpect(this.small.cells, expected);
+  }
+
+  //test for next
+  void testNext(Tester t) {
+    byte[] cells = new byte[20];
+    t.checkExpect(BoardKernels.next(cells, 0, PackedBoard.POWERED), 20);
+    cells[3] = PackedBoard.POWERED;
+    cells[11] = PackedBoard.POWERED | PackedBoard.LEFT;
+    cells[18] = PackedBoard.POWERED;
+    t.checkExpect(BoardKernels.next(cells, 0, PackedBoard.POWERED), 3);
+    t.checkExpect(BoardKernels.next(cells, 4, PackedBoard.POWERED), 11);
+    t.checkExpect(BoardKernels.next(cells, 12, PackedBoard.POWERED), 18);
+    t.checkExpect(BoardKernels.next(cells, 0, PackedBoard.LEFT), 11);
+    t.checkExpect(BoardKernels.next(cells, 19, PackedBoard.POWERED), 20);
+  }
+
+  //test for rotateAll against rotating one tile at a time
+  void testRotateAll(Tester t) {
+    this.initData();
+    Random rand = new Random(3);
+    byte[] turns = new byte[this.large.cells.length];
+    byte[] expected = this.large.cells.clone();
+    for (int i = 0; i < turns.length; i++) {
+      turns[i] = (byte) rand.nextInt(4);
+      expected[i] = (byte) ((expected[i] & ~PackedBoard.WIRES)
+          | PackedBoard.rotateWires(expected[i] & PackedBoard.WIRES, turns[i]));
+    }
+    BoardKernels.rotateAll(this.large.cells, turns);
+    t.checkExpect(this.large.cells, expected);
+    BoardKernels.rotateAll(this.small.cells, new byte[] {1, 1, 1, 1, 1, 1, 1, 1, 1});
+    BoardKernels.rotateAll(this.small.cells, new byte[] {3, 3, 3, 3, 3, 3, 3, 3, 3});
+    t.checkExpect(this.small.cells, this.randomBoard(3, 3, new Random(1)).cells);
+  }
+
+  //test for countEnds and countMatched against the links counted tile by tile
+  void testCount(Tester t) {
+    this.initData();
+    for (PackedBoard board : new PackedBoard[] {this.small, this.large,
+        this.randomBoard(8, 8, new Random(4)), this.randomBoard(1, 40, new Random(5)),
+        this.randomBoard(40, 1, new Random(6))}) {
+      int matched = BoardKernels.countMatched(board.cells, board.width);
+      t.checkExpect(matched, board.matched);
+      t.checkExpect(BoardKernels.countEnds(board.cells) - 2 * matched, board.dangling);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+import tester.*;
+import java.awt.Color;
+import java.awt.Polygon;
+import javalib.worldimages.*;
+
+//represents a persistent off-screen picture of a PackedBoard, where only
+//the tiles that changed since the last frame are drawn again
+class BoardRaster {
+  // the colours of tiles that do not depend on power
+  static final Color BACKGROUND = Color.DARK_GRAY;
+  static final Color OUTLINE = Color.BLACK;
+  static final Color STATION = new Color(0, 255, 255);
+
+  PackedBoard board;
+  int tileSize;
+  int wireWidth;
+  // the picture of the whole board
+  ComputedPixelImage frame;
+  // the bits each tile was last drawn with, or -1 if it was never drawn
+  int[] drawn;
+  // the pixels of each kind of tile, indexed like TileSprites; null until needed
+  Color[][] tilePixels;
+
+  BoardRaster(PackedBoard board, int tileSize, int wireWidth) {
+    this.board = board;
+    this.tileSize = tileSize;
+    this.wireWidth = wireWidth;
+    this.frame = new ComputedPixelImage(board.width * tileSize, board.height * tileSize);
+    this.drawn = new int[board.cells.length];
+    this.tilePixels = new Color[TileSprites.KEYS][];
+    this.board.trackChanges();
+    for (int i = 0; i < this.drawn.length; i++) {
+      this.drawn[i] = -1;
+      this.drawTile(i);
+    }
+    this.board.clearDirty();
+  }
+
+  //draws again every tile whose bits changed since the last call,
+  //and returns the number of tiles drawn
+  //EFFECT: updates the frame and drains the board's dirty list
+  int redraw() {
+    int count = 0;
+    for (int i = 0; i < this.board.dirtyCount; i++) {
+      if (this.drawTile(this.board.dirtyList[i])) {
+        count += 1;
+      }
+    }
+    this.board.clearDirty();
+    return count;
+  }
+
+  //draws the tile at the given index into the frame, unless it is
+  //already drawn with the same bits; returns whether it was drawn
+  //EFFECT: updates the frame and drawn
+  boolean drawTile(int index) {
+    int key = this.board.get(index) & (TileSprites.KEYS - 1);
+    if (this.drawn[index] == key) {
+      return false;
+    }
+    Color[] pixels = this.pixels(key);
+    int left = this.board.rowOf(index) * this.tileSize;
+    int top = this.board.colOf(index) * this.tileSize;
+    for (int y = 0; y < this.tileSize; y++) {
+      for (int x = 0; x < this.tileSize; x++) {
+        this.frame.setPixel(left + x, top + y, pixels[y * this.tileSize + x]);
+      }
+    }
+    this.drawn[index] = key;
+    return true;
+  }
+
+  //returns the pixels of a tile with the given bits, in rows from the top
+  //EFFECT: computes and caches them the first time they are needed
+  Color[] pixels(int key) {
+    if (this.tilePixels[key] == null) {
+      int size = this.tileSize;
+      Color wire = (key & PackedBoard.POWERED) != 0
+          ? GamePiece.POWERED_COLOR : GamePiece.UNPOWERED_COLOR;
+      int half = (size + 1) / 2;
+      int band = (size - this.wireWidth) / 2;
+      Polygon star = this.star(size / 2, size / 2, size / 3, 7);
+      Color[] pixels = new Color[size * size];
+      for (int y = 0; y < size; y++) {
+        for (int x = 0; x < size; x++) {
+          boolean vertical = x >= band && x < band + this.wireWidth;
+          boolean horizontal = y >= band && y < band + this.wireWidth;
+          Color color = BACKGROUND;
+          if ((vertical && horizontal)
+              || (vertical && y < half && (key & PackedBoard.TOP) != 0)
+              || (vertical && y >= size - half && (key & PackedBoard.BOTTOM) != 0)
+              || (horizontal && x < half && (key & PackedBoard.LEFT) != 0)
+              || (horizontal && x >= size - half && (key & PackedBoard.RIGHT) != 0)) {
+            color = wire;
+          }
+          if ((key & PackedBoard.STATION) != 0 && star.contains(x, y)) {
+            color = STATION;
+          }
+          if (x == 0 || y == 0 || x == size - 1 || y == size - 1) {
+            color = OUTLINE;
+          }
+          pixels[y * size + x] = color;
+        }
+      }
+      this.tilePixels[key] = pixels;
+    }
+    return this.tilePixels[key];
+  }
+
+  //returns a star with the given centre, outer radius and number of points,
+  //with an inner radius of half the outer one
+  Polygon star(int centreX, int centreY, int radius, int points) {
+    Polygon star = new Polygon();
+    for (int i = 0; i < points * 2; i++) {
+      double r = (i % 2 == 0) ? radius : radius / 2.0;
+      double angle = Math.PI * i / points - Math.PI / 2;
+      star.addPoint(
+          (int) Math.round(centreX + r * Math.cos(angle)),
+          (int) Math.round(centreY + r * Math.sin(angle)));
+    }
+    return star;
+  }
+}
+
+//examples class for testing
+class ExamplesBoardRaster {
+  PackedBoard board;
+  BoardRaster raster;
+
+  //initialises a 2x1 board with a station tile wired to its neighbour
+  void initData() {
+    this.board = new PackedBoard(2, 1);
+    this.board.set(0, PackedBoard.RIGHT | PackedBoard.STATION);
+    this.board.set(1, PackedBoard.LEFT);
+    this.raster = new BoardRaster(this.board, 10, 2);
+  }
+
+  //test for the constructor, which draws every tile
+  void testConstructor(Tester t) {
+    this.initData();
+    t.checkExpect(this.raster.drawn[0], PackedBoard.RIGHT | PackedBoard.STATION);
+    t.checkExpect(this.raster.drawn[1], PackedBoard.LEFT);
+    t.checkExpect(this.board.dirtyCount, 0);
+    t.checkExpect(this.raster.frame.getPixel(0, 0), Color.BLACK);
+    t.checkExpect(this.raster.frame.getPixel(13, 4), GamePiece.UNPOWERED_COLOR);
+    t.checkExpect(this.raster.frame.getPixel(15, 2), Color.DARK_GRAY);
+  }
+
+  //test for redraw
+  void testRedraw(Tester t) {
+    this.initData();
+    t.checkExpect(this.raster.redraw(), 0);
+    this.board.rotate(1, 1);
+    t.checkExpect(this.raster.redraw(), 1);
+    t.checkExpect(this.raster.frame.getPixel(13, 4), Color.DARK_GRAY);
+    t.checkExpect(this.raster.frame.getPixel(14, 2), GamePiece.UNPOWERED_COLOR);
+    // a tile changed and changed back is not drawn again
+    this.board.set(0, PackedBoard.POWERED);
+    this.board.clear(0, PackedBoard.POWERED);
+    t.checkExpect(this.raster.redraw(), 0);
+  }
+
+  //test for drawTile
+  void testDrawTile(Tester t) {
+    this.initData();
+    t.checkExpect(this.raster.drawTile(1), false);
+    this.board.cells[1] |= PackedBoard.POWERED;
+    t.checkExpect(this.raster.drawTile(1), true);
+    t.checkExpect(this.raster.frame.getPixel(13, 4), GamePiece.POWERED_COLOR);
+  }
+
+  //test for pixels
+  void testPixels(Tester t) {
+    this.initData();
+    Color[] pixels = this.raster.pixels(PackedBoard.TOP | PackedBoard.POWERED);
+    t.checkExpect(pixels.length, 100);
+    t.checkExpect(pixels[1 * 10 + 4], GamePiece.POWERED_COLOR);
+    t.checkExpect(pixels[8 * 10 + 4], Color.DARK_GRAY);
+    t.checkExpect(pixels[9 * 10 + 4], Color.BLACK);
+    t.checkExpect(this.raster.pixels(PackedBoard.TOP | PackedBoard.POWERED) == pixels, true);
+  }
+
+  //test for star
+  void testStar(Tester t) {
+    this.initData();
+    Polygon star = this.raster.star(15, 15, 10, 7);
+    t.checkExpect(star.npoints, 14);
+    t.checkExpect(star.contains(15, 15), true);
+    t.checkExpect(star.contains(1, 1), false);
+  }
+}
@@ -0,0 +1,39 @@
+import tester.*;
+import java.util.Random;
+
+//represents a sink that writes rows into a packed board
+class BoardSink implements RowSink {
+  PackedBoard board;
+
+  BoardSink(PackedBoard board) {
+    this.board = board;
+  }
+
+  //EFFECT: sets the wires of the tiles in row y, keeping their other bits,
+  //        and recounts the board's links once the last row is written
+  public void accept(int y, byte[] wires) {
+    for (int x = 0; x < wires.length; x++) {
+      int index = this.board.index(x, y);
+      this.board.cells[index] = (byte) ((this.board.cells[index] & ~PackedBoard.WIRES) | wires[x]);
+    }
+    if (y == this.board.height - 1) {
+      this.board.recount();
+    }
+  }
+}
+
+//examples class for testing
+class ExamplesBoardSink {
+  //test for BoardSink's accept
+  void testBoardSink(Tester t) {
+    PuzzleEngine engine = new PuzzleEngine(7, 5, new Random(3));
+    engine.initBoard();
+    BoardSink sink = new BoardSink(engine.board);
+    sink.accept(0, new byte[] {4, 1, 0, 0, 0, 0, 0});
+    t.checkExpect(engine.board.get(0), PackedBoard.STATION | PackedBoard.RIGHT);
+    t.checkExpect(engine.board.wires(1), PackedBoard.LEFT);
+    t.checkExpect(engine.board.matched, 0);
+    sink.accept(4, new byte[7]);
+    t.checkExpect(engine.board.matched, 1);
+  }
+}
@@ -0,0 +1,298 @@
+import tester.*;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+//represents the islands of a board: the groups of tiles joined by wires that
+//meet, as they are turned now, labelled by one union-find sweep over the
+//links to the right and below; each island's id is its smallest tile index,
+//so the labels are the same however the sweep is split
+class Components {
+  // boards are split into stripes of whole cols of about this many tiles
+  static final int STRIPE = 1 << 14;
+
+  PackedBoard board;
+  // after label, the id of each tile's island; during it, the union-find parents
+  int[] parent;
+  // the number of tiles in the island of each id
+  int[] size;
+  // the number of islands
+  int count;
+  // the pool stripes are labelled on, or null to label sequentially
+  ForkJoinPool pool;
+
+  Components(PackedBoard board) {
+    this.board = board;
+    this.parent = new int[board.cells.length];
+    this.size = new int[board.cells.length];
+    this.count = 0;
+    this.pool = null;
+  }
+
+  //returns the id of the island the tile is in, as of the last label
+  int id(int tile) {
+    return this.parent[tile];
+  }
+
+  //returns the number of tiles in the island the tile is in, as of the last label
+  int sizeOf(int tile) {
+    return this.size[this.parent[tile]];
+  }
+
+  //labels every tile with its island, in stripes on the pool if there is
+  //one and the board is larger than a stripe; allocates nothing per tile
+  //EFFECT: updates parent, size and count
+  void label() {
+    int n = this.board.cells.length;
+    int cols = Math.max(1, STRIPE / this.board.width);
+    if (this.pool == null || n <= STRIPE) {
+      this.labelCols(0, this.board.height);
+      this.count = this.flatten(0, n);
+      return;
+    }
+    this.pool.invoke(new LabelTask(this, 0, this.board.height, cols));
+    // join the stripes along the edges between them
+    for (int col = cols; col < this.board.height; col += cols) {
+      this.joinDown(col - 1);
+    }
+    this.count = this.pool.invoke(new FlattenTask(this, 0, n));
+  }
+
+  //puts each tile of the cols from first up to last in its own island, then
+  //joins the tiles linked to their right, and those linked below them
+  //within the cols
+  //EFFECT: updates parent and size of the tiles in the cols
+  void labelCols(int first, int last) {
+    int width = this.board.width;
+    for (int i = first * width; i < last * width; i++) {
+      this.parent[i] = i;
+      this.size[i] = 1;
+    }
+    for (int col = first; col < last; col++) {
+      byte[] cells = this.board.cells;
+      for (int i = col * width; i < (col + 1) * width - 1; i++) {
+        if ((cells[i] & PackedBoard.RIGHT) != 0 && (cells[i + 1] & PackedBoard.LEFT) != 0) {
+          this.union(i, i + 1);
+        }
+      }
+      if (col + 1 < last) {
+        this.joinDown(col);
+      }
+    }
+  }
+
+  //EFFECT: joins every tile of the col to the tile below it where their wires meet
+  void joinDown(int col) {
+    byte[] cells = this.board.cells;
+    int width = this.board.width;
+    for (int i = col * width; i < (col + 1) * width; i++) {
+      if ((cells[i] & PackedBoard.BOTTOM) != 0 && (cells[i + width] & PackedBoard.TOP) != 0) {
+        this.union(i, i + width);
+      }
+    }
+  }
+
+  //finds the root of a tile's island
+  //EFFECT: points every other tile on the way to its grandparent
+  int find(int tile) {
+    while (this.parent[tile] != tile) {
+      this.parent[tile] = this.parent[this.parent[tile]];
+      tile = this.parent[tile];
+    }
+    return tile;
+  }
+
+  //joins the islands of two tiles under the smaller of their roots
+  //EFFECT: links one root to the other and adds up their sizes
+  void union(int x, int y) {
+    int xRoot = this.find(x);
+    int yRoot = this.find(y);
+    if (xRoot < yRoot) {
+      this.parent[yRoot] = xRoot;
+      this.size[xRoot] += this.size[yRoot];
+    } else if (yRoot < xRoot) {
+      this.parent[xRoot] = yRoot;
+      this.size[yRoot] += this.size[xRoot];
+    }
+  }
+
+  //points every tile from start up to stop straight at its root, and returns
+  //how many of them are roots; tiles are only ever pointed further up their
+  //own island, so ranges can be flattened at the same time
+  //EFFECT: updates parent
+  int flatten(int start, int stop) {
+    int roots = 0;
+    for (int i = start; i < stop; i++) {
+      int root = i;
+      while (this.parent[root] != root) {
+        root = this.parent[root];
+      }
+      this.parent[i] = root;
+      if (root == i) {
+        roots += 1;
+      }
+    }
+    return roots;
+  }
+}
+
+//represents labelling the cols from first to last of a board in stripes,
+//each joined only within itself
+class LabelTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+
+  Components components;
+  int first;
+  int last;
+  // the number of cols in a stripe
+  int cols;
+
+  LabelTask(Components components, int first, int last, int cols) {
+    this.components = components;
+    this.first = first;
+    this.last = last;
+    this.cols = cols;
+  }
+
+  //EFFECT: labels each stripe, splitting the cols between stripes
+  protected void compute() {
+    int stripes = (this.last - this.first + this.cols - 1) / this.cols;
+    if (stripes <= 1) {
+      this.components.labelCols(this.first, this.last);
+      return;
+    }
+    int middle = this.first + stripes / 2 * this.cols;
+    invokeAll(new LabelTask(this.components, this.first, middle, this.cols),
+        new LabelTask(this.components, middle, this.last, this.cols));
+  }
+}
+
+//represents flattening a range of tiles after the stripes are joined
+class FlattenTask extends RecursiveTask<Integer> {
+  static final long serialVersionUID = 1L;
+
+  Components components;
+  int start;
+  int stop;
+
+  FlattenTask(Components components, int start, int stop) {
+    this.components = components;
+    this.start = start;
+    this.stop = stop;
+  }
+
+  //returns the number of roots in the range
+  //EFFECT: points each tile in the range at its root
+  protected Integer compute() {
+    if (this.stop - this.start <= Components.STRIPE) {
+      return this.components.flatten(this.start, this.stop);
+    }
+    int middle = (this.start + this.stop) >>> 1;
+    FlattenTask left = new FlattenTask(this.components, this.start, middle);
+    left.fork();
+    int right = new FlattenTask(this.components, middle, this.stop).compute();
+    return left.join() + right;
+  }
+}
+
+//examples class for testing
+class ExamplesComponents {
+  PackedBoard board;
+  Components components;
+
+  //initialises a 3x2 board where the top row is wired together, the
+  //bottom-left tile hangs off the middle one through the bottom-middle tile,
+  //and the bottom-right tile faces away
+  void initData() {
+    this.board = new PackedBoard(3, 2);
+    this.board.set(0, PackedBoard.RIGHT);
+    this.board.set(1, PackedBoard.LEFT | PackedBoard.RIGHT | PackedBoard.BOTTOM);
+    this.board.set(2, PackedBoard.LEFT);
+    this.board.set(3, PackedBoard.RIGHT);
+    this.board.set(4, PackedBoard.LEFT | PackedBoard.TOP);
+    this.board.set(5, PackedBoard.RIGHT);
+    this.components = new Components(this.board);
+  }
+
+  //test for label, id and sizeOf
+  void testLabel(Tester t) {
+    this.initData();
+    this.components.label();
+    t.checkExpect(this.components.count, 2);
+    t.checkExpect(this.components.parent, new int[] {0, 0, 0, 0, 0, 5});
+    t.checkExpect(this.components.id(4), 0);
+    t.checkExpect(this.components.sizeOf(3), 5);
+    t.checkExpect(this.components.sizeOf(5), 1);
+    // labels follow the wires as they are turned now
+    this.board.rotate(1, 1);
+    this.components.label();
+    t.checkExpect(this.components.count, 3);
+    t.checkExpect(this.components.parent, new int[] {0, 0, 2, 0, 0, 5});
+    t.checkExpect(this.components.sizeOf(4), 4);
+  }
+
+  //test for labelling in stripes on a pool, with LabelTask and FlattenTask,
+  //which must agree with a sequential sweep and with power from the station
+  void testLabelStripes(Tester t) {
+    PuzzleEngine game = new PuzzleEngine(200, 300, new Random(12));
+    game.generate();
+    Components sequential = new Components(game.board);
+    sequential.label();
+    Components striped = new Components(game.board);
+    striped.pool = new ForkJoinPool(3);
+    striped.label();
+    t.checkExpect(striped.count, sequential.count);
+    t.checkExpect(striped.parent, sequential.parent);
+    t.checkExpect(striped.sizeOf(0), sequential.sizeOf(0));
+    t.checkExpect(sequential.sizeOf(0), game.power.reached);
+    int total = 0;
+    for (int i = 0; i < game.board.cells.length; i++) {
+      if (sequential.id(i) == i) {
+        total += sequential.sizeOf(i);
+      }
+    }
+    t.checkExpect(total, 60000);
+    // a solved board is one island
+    game.initBoard();
+    game.mst.size = 0;
+    game.buildMST(game.board);
+    game.visualiseConnections();
+    striped.label();
+    t.checkExpect(striped.count, 1);
+    t.checkExpect(striped.sizeOf(59999), 60000);
+    striped.pool.shutdown();
+  }
+
+  //test for labelCols and joinDown
+  void testLabelCols(Tester t) {
+    this.initData();
+    this.components.labelCols(0, 1);
+    this.components.labelCols(1, 2);
+    // the two rows are labelled apart until they are joined
+    t.checkExpect(this.components.find(4), 3);
+    t.checkExpect(this.components.size[3], 2);
+    this.components.joinDown(0);
+    t.checkExpect(this.components.find(4), 0);
+    t.checkExpect(this.components.size[0], 5);
+  }
+
+  //test for find and union
+  void testUnion(Tester t) {
+    this.initData();
+    this.components.labelCols(0, 2);
+    this.components.union(5, 2);
+    t.checkExpect(this.components.find(5), 0);
+    t.checkExpect(this.components.size[0], 6);
+    this.components.union(5, 3);
+    t.checkExpect(this.components.size[0], 6);
+  }
+
+  //test for flatten
+  void testFlatten(Tester t) {
+    this.initData();
+    this.components.parent = new int[] {0, 0, 1, 2, 4, 4};
+    t.checkExpect(this.components.flatten(0, 6), 2);
+    t.checkExpect(this.components.parent, new int[] {0, 0, 0, 0, 4, 4});
+  }
+}
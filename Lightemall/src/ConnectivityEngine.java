@@ -0,0 +1,878 @@
+import tester.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//represents a breadth-first search over the wires of a PackedBoard
+//that reuses its queue and visited set between searches, and keeps
+//the search tree so single rotations can be applied incrementally
+class ConnectivityEngine {
+  // boards with fewer tiles than this are searched sequentially even with a pool
+  static final int PARALLEL_THRESHOLD = 1 << 16;
+  // claims tiles in the visited set atomically when searching in parallel
+  static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  PackedBoard board;
+  // a queue of tile indices waiting to be expanded, each queued at most once
+  int[] queue;
+  // the tiles cut off from power by the last incremental rotation
+  int[] cut;
+  // one bit per tile, set when the tile is first reached
+  long[] visited;
+  // the tile each powered tile was reached from, the source for the
+  // source itself, and -1 for unpowered tiles
+  int[] parent;
+  // the tile power was last searched from
+  int source;
+  // the number of tiles currently powered
+  int reached;
+  // the most tiles advance switches off or spreads power from per call,
+  // or 0 to update power all at once
+  int budget;
+  // in progressive mode, the tiles in cut from drainHead to drainTail are
+  // still powered from before the last change and are switched off first;
+  // then power spreads from the source, with queue[0 .. tail) powered and
+  // queue[head .. tail) still to be spread from
+  int drainHead;
+  int drainTail;
+  int head;
+  int tail;
+  // whether power has stopped changing since the last change to the board
+  boolean settled;
+  // the pool full searches of large boards are split over, or null
+  ForkJoinPool pool;
+  // the end of the queue while searching in parallel
+  AtomicInteger end;
+
+  ConnectivityEngine(PackedBoard board) {
+    this.board = board;
+    this.queue = new int[Math.max(board.cells.length, 1)];
+    this.cut = new int[Math.max(board.cells.length, 1)];
+    this.visited = new long[(board.cells.length + 63) >> 6];
+    this.parent = new int[board.cells.length];
+    this.source = 0;
+    this.reached = 0;
+    this.budget = 0;
+    this.drainHead = 0;
+    this.drainTail = 0;
+    this.head = 0;
+    this.tail = 0;
+    this.settled = true;
+    this.pool = null;
+    this.end = new AtomicInteger();
+  }
+
+  //determines if every tile is powered
+  boolean allPowered() {
+    return this.reached == this.board.cells.length;
+  }
+
+  //determines if the tile at the given index was reached by the last search
+  boolean isVisited(int index) {
+    return (this.visited[index >> 6] & (1L << index)) != 0;
+  }
+
+  //powers every tile connected to the source and returns whether
+  //that is every tile on the board
+  //EFFECT: clears and resets the powered bit of every tile
+  boolean powerFrom(int source) {
+    if (this.pool != null && this.board.cells.length >= PARALLEL_THRESHOLD) {
+      return this.parallelPowerFrom(source);
+    }
+    byte[] cells = this.board.cells;
+    int width = this.board.width;
+    int size = cells.length;
+    for (int i = 0; i < this.visited.length; i++) {
+      this.visited[i] = 0;
+    }
+    this.board.clearPower();
+    for (int i = 0; i < this.parent.length; i++) {
+      this.parent[i] = -1;
+    }
+
+    this.source = source;
+    this.parent[source] = source;
+    this.visited[source >> 6] |= 1L << source;
+    this.queue[0] = source;
+    int head = 0;
+    int tail = 1;
+    int count = 1;
+
+    // each tile is queued at most once, so the queue never needs to wrap
+    while (head < tail) {
+      int next = this.queue[head];
+      head++;
+      this.board.set(next, PackedBoard.POWERED);
+      int cell = cells[next];
+      int row = next % width;
+      int other;
+
+      // each tile is marked when it is queued, so it is queued only once
+      other = next - 1;
+      if ((cell & PackedBoard.LEFT) != 0 && row > 0
+          && (cells[other] & PackedBoard.RIGHT) != 0
+          && (this.visited[other >> 6] & (1L << other)) == 0) {
+        this.visited[other >> 6] |= 1L << other;
+        this.parent[other] = next;
+        this.queue[tail] = other;
+        tail++;
+        count += 1;
+      }
+      other = next + 1;
+      if ((cell & PackedBoard.RIGHT) != 0 && row < width - 1
+          && (cells[other] & PackedBoard.LEFT) != 0
+          && (this.visited[other >> 6] & (1L << other)) == 0) {
+        this.visited[other >> 6] |= 1L << other;
+        this.parent[other] = next;
+        this.queue[tail] = other;
+        tail++;
+        count += 1;
+      }
+      other = next - width;
+      if ((cell & PackedBoard.TOP) != 0 && other >= 0
+          && (cells[other] & PackedBoard.BOTTOM) != 0
+          && (this.visited[other >> 6] & (1L << other)) == 0) {
+        this.visited[other >> 6] |= 1L << other;
+        this.parent[other] = next;
+        this.queue[tail] = other;
+        tail++;
+        count += 1;
+      }
+      other = next + width;
+      if ((cell & PackedBoard.BOTTOM) != 0 && other < size
+          && (cells[other] & PackedBoard.TOP) != 0
+          && (this.visited[other >> 6] & (1L << other)) == 0) {
+        this.visited[other >> 6] |= 1L << other;
+        this.parent[other] = next;
+        this.queue[tail] = other;
+        tail++;
+        count += 1;
+      }
+    }
+    this.reached = count;
+    // the powered tiles are exactly the ones queued, as progressive mode needs
+    this.drainHead = 0;
+    this.drainTail = 0;
+    this.head = count;
+    this.tail = count;
+    this.settled = true;
+    return count == size;
+  }
+
+  //powers every tile connected to the source like powerFrom, but searches one
+  //level of distance from the source at a time, splitting each level over
+  //the pool; tiles are claimed in the visited set atomically, so each joins
+  //the next level once and is listed in the queue, level after level
+  //EFFECT: sets the powered bit of every tile to whether it is reached,
+  //        and updates parent, visited, reached and the queue
+  boolean parallelPowerFrom(int source) {
+    int size = this.board.cells.length;
+    Arrays.fill(this.visited, 0);
+    this.source = source;
+    this.parent[source] = source;
+    this.visited[source >> 6] |= 1L << source;
+    this.queue[0] = source;
+    this.end.set(1);
+    int start = 0;
+    while (start < this.end.get()) {
+      int stop = this.end.get();
+      ExpandTask level = new ExpandTask(this, start, stop);
+      if (stop - start <= ExpandTask.GRAIN) {
+        level.compute();
+      } else {
+        this.pool.invoke(level);
+      }
+      start = stop;
+    }
+    int count = this.end.get();
+    if (this.board.dirtyMarks != null) {
+      // the dirty list is not safe to add to from several threads
+      for (int i = 0; i < size; i++) {
+        this.mark(i, true);
+      }
+    } else {
+      this.pool.invoke(new MarkTask(this, 0, size));
+    }
+    this.reached = count;
+    this.drainHead = 0;
+    this.drainTail = 0;
+    this.head = count;
+    this.tail = count;
+    this.settled = true;
+    return count == size;
+  }
+
+  //claims the tile for the search in progress, returning false if another
+  //tile already has; safe to call from several threads at once
+  //EFFECT: sets the tile's bit in the visited set
+  boolean claim(int tile) {
+    int word = tile >> 6;
+    long bit = 1L << tile;
+    long seen = (long) WORDS.getVolatile(this.visited, word);
+    while ((seen & bit) == 0) {
+      if (WORDS.compareAndSet(this.visited, word, seen, seen | bit)) {
+        return true;
+      }
+      seen = (long) WORDS.getVolatile(this.visited, word);
+    }
+    return false;
+  }
+
+  //sets the tile's powered bit to whether the last search reached it,
+  //through the board if changes are tracked and directly otherwise
+  //EFFECT: updates the tile's powered bit, and its parent if it was not reached
+  void mark(int tile, boolean tracked) {
+    boolean powered = this.isVisited(tile);
+    if (!powered) {
+      this.parent[tile] = -1;
+    }
+    if (powered != ((this.board.cells[tile] & PackedBoard.POWERED) != 0)) {
+      if (!tracked) {
+        this.board.cells[tile] ^= PackedBoard.POWERED;
+      } else if (powered) {
+        this.board.set(tile, PackedBoard.POWERED);
+      } else {
+        this.board.clear(tile, PackedBoard.POWERED);
+      }
+    }
+  }
+
+  //moves the source of power to a tile, re-rooting the search tree by
+  //reversing the parent links on the path back to the old source, or
+  //searching again if the tile is not powered
+  //EFFECT: updates source and parent, and the powered bits if it searches
+  void moveSource(int index) {
+    if (this.budget > 0) {
+      this.restart(index);
+      return;
+    }
+    if (this.parent[index] < 0) {
+      this.powerFrom(index);
+      return;
+    }
+    int prev = index;
+    int cur = this.parent[index];
+    this.parent[index] = index;
+    while (prev != this.source) {
+      int up = this.parent[cur];
+      this.parent[cur] = prev;
+      prev = cur;
+      cur = up;
+    }
+    this.source = index;
+  }
+
+  //rotates one tile and updates power from the current source, touching only
+  //the tiles cut off by the rotation and the tiles newly connected by it;
+  //power must be up to date before the rotation; in progressive mode the
+  //rotation only restarts power, and this returns false
+  //EFFECT: rotates the tile, and updates the powered bits, parent and reached
+  boolean rotate(int index, int rotations) {
+    if (this.budget > 0) {
+      this.board.rotate(index, rotations);
+      this.restart(this.source);
+      return false;
+    }
+    int cutSize = 0;
+    if (this.parent[index] >= 0) {
+      // a powered tile loses the subtrees hanging off the tree edges it no longer has
+      int before = this.board.wires(index);
+      this.board.rotate(index, rotations);
+      int lost = before & ~this.board.wires(index);
+      for (int dir = PackedBoard.LEFT; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        int other = this.board.neighbour(index, dir);
+        if ((lost & dir) != 0 && other >= 0) {
+          if (this.parent[other] == index) {
+            cutSize = this.cutSubtree(other, cutSize);
+          } else if (this.parent[index] == other) {
+            cutSize = this.cutSubtree(index, cutSize);
+          }
+        }
+      }
+    } else {
+      this.board.rotate(index, rotations);
+    }
+
+    // regrow power into cut tiles that are still connected some other way,
+    // and into whatever the rotated tile now connects to
+    int tail = 0;
+    this.cut[cutSize] = index;
+    for (int i = 0; i <= cutSize; i++) {
+      int tile = this.cut[i];
+      if (this.parent[tile] >= 0) {
+        this.queue[tail] = tile;
+        tail += 1;
+      } else {
+        for (int dir = PackedBoard.LEFT; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+          int other = this.board.neighbour(tile, dir);
+          if (this.parent[tile] < 0 && this.board.connects(tile, dir) && this.parent[other] >= 0) {
+            this.powerUp(tile, other);
+            this.queue[tail] = tile;
+            tail += 1;
+          }
+        }
+      }
+    }
+    this.grow(tail);
+    return this.allPowered();
+  }
+
+  //removes power from the tree of powered tiles under the given root,
+  //appending the removed tiles to cut after the given number of them
+  //returns the new number of cut tiles
+  //EFFECT: clears the powered bit and parent of every tile in the subtree
+  int cutSubtree(int root, int cutSize) {
+    int head = cutSize;
+    int tail = cutSize;
+    this.cut[tail] = root;
+    tail += 1;
+    while (head < tail) {
+      int next = this.cut[head];
+      head += 1;
+      for (int dir = PackedBoard.LEFT; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        int other = this.board.neighbour(next, dir);
+        if (other >= 0 && other != root && this.parent[other] == next) {
+          this.cut[tail] = other;
+          tail += 1;
+        }
+      }
+    }
+    for (int i = cutSize; i < tail; i++) {
+      this.parent[this.cut[i]] = -1;
+      this.board.clear(this.cut[i], PackedBoard.POWERED);
+    }
+    this.reached -= tail - cutSize;
+    return tail;
+  }
+
+  //powers a tile reached from the given powered tile
+  //EFFECT: sets the powered bit and parent of the tile, and counts it
+  void powerUp(int tile, int from) {
+    this.parent[tile] = from;
+    this.board.set(tile, PackedBoard.POWERED);
+    this.reached += 1;
+  }
+
+  //spreads power from the first queued tiles into every connected unpowered tile
+  //EFFECT: powers the newly connected tiles
+  void grow(int queued) {
+    int head = 0;
+    int tail = queued;
+    while (head < tail) {
+      int next = this.queue[head];
+      head += 1;
+      for (int dir = PackedBoard.LEFT; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        if (this.board.connects(next, dir)) {
+          int other = this.board.neighbour(next, dir);
+          if (this.parent[other] < 0) {
+            this.powerUp(other, next);
+            this.queue[tail] = other;
+            tail += 1;
+          }
+        }
+      }
+    }
+  }
+
+  //switches to updating power a few tiles at a time through advance,
+  //or back to updating it all at once if the budget is 0; power is
+  //searched in full first, so every mode starts from the same state
+  //EFFECT: sets the budget and searches power from the source
+  void progressive(int budget) {
+    this.budget = budget;
+    this.powerFrom(this.source);
+  }
+
+  //starts power over from the given source after the board changed, without
+  //doing any of the work: the tiles powered now are switched off and then
+  //power spreads again, a budget's worth of tiles per call to advance
+  //EFFECT: sets source, and queues the powered tiles to be switched off
+  //        unless the last change is still switching them off
+  void restart(int source) {
+    this.source = source;
+    if (this.drainHead == this.drainTail) {
+      int[] powered = this.queue;
+      this.queue = this.cut;
+      this.cut = powered;
+      this.drainHead = 0;
+      this.drainTail = this.tail;
+    }
+    this.head = 0;
+    this.tail = 0;
+    this.settled = false;
+  }
+
+  //switches off and then spreads power from up to budget tiles, and returns
+  //whether power has settled, so a frame's work is bounded however large
+  //the board is
+  //EFFECT: updates the powered bits, parent, visited and reached of the
+  //        tiles worked on, and settled
+  boolean advance() {
+    int work = 0;
+    while (work < this.budget && this.drainHead < this.drainTail) {
+      int tile = this.cut[this.drainHead];
+      this.drainHead += 1;
+      this.parent[tile] = -1;
+      this.visited[tile >> 6] &= ~(1L << tile);
+      this.board.clear(tile, PackedBoard.POWERED);
+      this.reached -= 1;
+      work += 1;
+    }
+    if (this.drainHead == this.drainTail && this.tail == 0 && !this.settled) {
+      this.drainHead = 0;
+      this.drainTail = 0;
+      this.light(this.source, this.source);
+    }
+    while (work < this.budget && this.head < this.tail) {
+      int next = this.queue[this.head];
+      this.head += 1;
+      for (int dir = PackedBoard.LEFT; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        if (this.board.connects(next, dir)) {
+          int other = this.board.neighbour(next, dir);
+          if (!this.isVisited(other)) {
+            this.light(other, next);
+          }
+        }
+      }
+      work += 1;
+    }
+    this.settled = this.drainHead == this.drainTail && this.head == this.tail;
+    return this.settled;
+  }
+
+  //powers a tile reached from the given tile while power spreads progressively
+  //EFFECT: marks the tile visited, powers it and queues it to spread from
+  void light(int tile, int from) {
+    this.visited[tile >> 6] |= 1L << tile;
+    this.powerUp(tile, from);
+    this.queue[this.tail] = tile;
+    this.tail += 1;
+  }
+}
+
+//represents the expansion of part of one level of a parallel search: the
+//tiles in the queue from start to stop claim their unclaimed neighbours,
+//which are added to the end of the queue as part of the next level
+class ExpandTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+  // levels are split until each task has at most this many tiles
+  static final int GRAIN = 1024;
+
+  ConnectivityEngine engine;
+  int start;
+  int stop;
+
+  ExpandTask(ConnectivityEngine engine, int start, int stop) {
+    this.engine = engine;
+    this.start = start;
+    this.stop = stop;
+  }
+
+  //EFFECT: claims the neighbours the tiles' wires meet, sets their parents,
+  //        and adds them to the queue in one block
+  protected void compute() {
+    if (this.stop - this.start > GRAIN) {
+      int middle = (this.start + this.stop) >>> 1;
+      invokeAll(new ExpandTask(this.engine, this.start, middle),
+          new ExpandTask(this.engine, middle, this.stop));
+      return;
+    }
+    ConnectivityEngine engine = this.engine;
+    byte[] cells = engine.board.cells;
+    int width = engine.board.width;
+    int size = cells.length;
+    int[] found = new int[3 * (this.stop - this.start) + 1];
+    int count = 0;
+    for (int i = this.start; i < this.stop; i++) {
+      int next = engine.queue[i];
+      int cell = cells[next];
+      int row = next % width;
+      // the same tests as powerFrom, with tiles claimed rather than marked
+      int other = next - 1;
+      if ((cell & PackedBoard.LEFT) != 0 && row > 0
+          && (cells[other] & PackedBoard.RIGHT) != 0
+          && !engine.isVisited(other) && engine.claim(other)) {
+        engine.parent[other] = next;
+        found[count] = other;
+        count += 1;
+      }
+      other = next + 1;
+      if ((cell & PackedBoard.RIGHT) != 0 && row < width - 1
+          && (cells[other] & PackedBoard.LEFT) != 0
+          && !engine.isVisited(other) && engine.claim(other)) {
+        engine.parent[other] = next;
+        found[count] = other;
+        count += 1;
+      }
+      other = next - width;
+      if ((cell & PackedBoard.TOP) != 0 && other >= 0
+          && (cells[other] & PackedBoard.BOTTOM) != 0
+          && !engine.isVisited(other) && engine.claim(other)) {
+        engine.parent[other] = next;
+        found[count] = other;
+        count += 1;
+      }
+      other = next + width;
+      if ((cell & PackedBoard.BOTTOM) != 0 && other < size
+          && (cells[other] & PackedBoard.TOP) != 0
+          && !engine.isVisited(other) && engine.claim(other)) {
+        engine.parent[other] = next;
+        found[count] = other;
+        count += 1;
+      }
+    }
+    int at = engine.end.getAndAdd(count);
+    System.arraycopy(found, 0, engine.queue, at, count);
+  }
+}
+
+//represents setting the powered bits of a range of tiles after a parallel search
+class MarkTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+  // ranges are split until each task has at most this many tiles
+  static final int STRIPE = 1 << 14;
+
+  ConnectivityEngine engine;
+  int start;
+  int stop;
+
+  MarkTask(ConnectivityEngine engine, int start, int stop) {
+    this.engine = engine;
+    this.start = start;
+    this.stop = stop;
+  }
+
+  //EFFECT: sets the powered bit of each tile in the range to whether it was reached
+  protected void compute() {
+    if (this.stop - this.start > STRIPE) {
+      int middle = (this.start + this.stop) >>> 1;
+      invokeAll(new MarkTask(this.engine, this.start, middle),
+          new MarkTask(this.engine, middle, this.stop));
+      return;
+    }
+    for (int i = this.start; i < this.stop; i++) {
+      this.engine.mark(i, false);
+    }
+  }
+}
+
+//examples class for testing
+class ExamplesConnectivityEngine {
+  PackedBoard board;
+  ConnectivityEngine engine;
+
+  //initialises a 3x2 board where the top row is wired together
+  //and the bottom row hangs off the middle tile
+  void initData() {
+    this.board = new PackedBoard(3, 2);
+    this.board.set(0, PackedBoard.RIGHT);
+    this.board.set(1, PackedBoard.LEFT | PackedBoard.RIGHT | PackedBoard.BOTTOM);
+    this.board.set(2, PackedBoard.LEFT);
+    this.board.set(3, PackedBoard.RIGHT);
+    this.board.set(4, PackedBoard.LEFT | PackedBoard.TOP | PackedBoard.RIGHT);
+    this.board.set(5, PackedBoard.TOP);
+    this.engine = new ConnectivityEngine(this.board);
+  }
+
+  //test for powerFrom
+  void testPowerFrom(Tester t) {
+    this.initData();
+    t.checkExpect(this.engine.powerFrom(0), false);
+    t.checkExpect(this.engine.reached, 5);
+    t.checkExpect(this.board.has(4, PackedBoard.POWERED), true);
+    t.checkExpect(this.board.has(5, PackedBoard.POWERED), false);
+    this.board.rotate(5, 1);
+    this.board.rotate(5, 1);
+    this.board.rotate(5, 1);
+    t.checkExpect(this.engine.powerFrom(4), true);
+    t.checkExpect(this.engine.reached, 6);
+    this.board.rotate(0, 1);
+    t.checkExpect(this.engine.powerFrom(0), false);
+    // power from the previous search is cleared
+    t.checkExpect(this.board.has(4, PackedBoard.POWERED), false);
+    t.checkExpect(this.board.has(0, PackedBoard.POWERED), true);
+    t.checkExpect(this.engine.reached, 1);
+    // a board of one tile is powered by its station alone
+    PuzzleEngine single = new PuzzleEngine(1, 1, new Random(1));
+    single.generate();
+    t.checkExpect(single.power.reached, 1);
+    t.checkExpect(single.hasPath(0), true);
+    t.checkExpect(single.isSolved(), true);
+  }
+
+  //test for rotate, which must agree with a full search after every rotation
+  void testRotate(Tester t) {
+    this.initData();
+    this.engine.powerFrom(0);
+    // cut the bottom row off by turning the middle tile
+    t.checkExpect(this.engine.rotate(1, 2), false);
+    t.checkExpect(this.engine.reached, 3);
+    t.checkExpect(this.board.has(4, PackedBoard.POWERED), false);
+    t.checkExpect(this.board.has(3, PackedBoard.POWERED), false);
+    t.checkExpect(this.board.has(2, PackedBoard.POWERED), true);
+    // turning it back regrows power into everything it reconnects
+    t.checkExpect(this.engine.rotate(1, 2), false);
+    t.checkExpect(this.engine.reached, 5);
+    t.checkExpect(this.board.has(3, PackedBoard.POWERED), true);
+    // an unpowered tile that joins the powered tree lights up
+    t.checkExpect(this.engine.rotate(5, 3), true);
+    t.checkExpect(this.engine.allPowered(), true);
+    t.checkExpect(this.engine.parent[5], 4);
+  }
+
+  //test for rotate on random boards against full searches
+  void testRotateRandom(Tester t) {
+    Random rand = new Random(7);
+    PackedBoard random = new PackedBoard(7, 5);
+    PackedBoard check = new PackedBoard(7, 5);
+    for (int i = 0; i < random.cells.length; i++) {
+      random.set(i, rand.nextInt(16));
+    }
+    ConnectivityEngine incremental = new ConnectivityEngine(random);
+    ConnectivityEngine full = new ConnectivityEngine(check);
+    incremental.powerFrom(17);
+    boolean same = true;
+    for (int move = 0; move < 500; move++) {
+      incremental.rotate(rand.nextInt(random.cells.length), 1 + rand.nextInt(3));
+      System.arraycopy(random.cells, 0, check.cells, 0, random.cells.length);
+      full.powerFrom(17);
+      same = same && Arrays.equals(random.cells, check.cells)
+          && incremental.reached == full.reached;
+    }
+    t.checkExpect(same, true);
+  }
+
+  //test for moveSource
+  void testMoveSource(Tester t) {
+    this.initData();
+    this.engine.powerFrom(0);
+    this.engine.moveSource(3);
+    t.checkExpect(this.engine.source, 3);
+    t.checkExpect(this.engine.parent[3], 3);
+    t.checkExpect(this.engine.parent[4], 3);
+    t.checkExpect(this.engine.parent[1], 4);
+    t.checkExpect(this.engine.parent[0], 1);
+    t.checkExpect(this.engine.parent[2], 1);
+    t.checkExpect(this.engine.reached, 5);
+    // cutting the old source off now leaves the new source powered
+    t.checkExpect(this.engine.rotate(0, 1), false);
+    t.checkExpect(this.board.has(0, PackedBoard.POWERED), false);
+    t.checkExpect(this.board.has(3, PackedBoard.POWERED), true);
+    // an unpowered tile is searched from instead
+    this.engine.moveSource(5);
+    t.checkExpect(this.engine.source, 5);
+    t.checkExpect(this.engine.reached, 1);
+  }
+
+  //test for cutSubtree
+  void testCutSubtree(Tester t) {
+    this.initData();
+    this.engine.powerFrom(0);
+    t.checkExpect(this.engine.cutSubtree(4, 0), 2);
+    t.checkExpect(this.engine.cut[0], 4);
+    t.checkExpect(this.engine.cut[1], 3);
+    t.checkExpect(this.engine.reached, 3);
+    t.checkExpect(this.board.has(3, PackedBoard.POWERED), false);
+    t.checkExpect(this.engine.parent[4], -1);
+  }
+
+  //test for powerUp and grow
+  void testGrow(Tester t) {
+    this.initData();
+    this.engine.powerFrom(0);
+    this.engine.cutSubtree(4, 0);
+    this.engine.queue[0] = 1;
+    this.engine.grow(1);
+    t.checkExpect(this.engine.reached, 5);
+    t.checkExpect(this.engine.parent[4], 1);
+    t.checkExpect(this.engine.parent[3], 4);
+    t.checkExpect(this.board.has(3, PackedBoard.POWERED), true);
+  }
+
+  //test for isVisited
+  void testIsVisited(Tester t) {
+    this.initData();
+    this.engine.powerFrom(2);
+    t.checkExpect(this.engine.isVisited(0), true);
+    t.checkExpect(this.engine.isVisited(5), false);
+  }
+
+  //test that boards spanning several words of the visited set are searched
+  void testLargeBoard(Tester t) {
+    PackedBoard line = new PackedBoard(200, 1);
+    for (int i = 0; i < 200; i++) {
+      line.set(i, PackedBoard.LEFT | PackedBoard.RIGHT);
+    }
+    ConnectivityEngine lineEngine = new ConnectivityEngine(line);
+    t.checkExpect(lineEngine.powerFrom(100), true);
+    t.checkExpect(lineEngine.isVisited(199), true);
+    line.clear(150, PackedBoard.LEFT);
+    t.checkExpect(lineEngine.powerFrom(0), false);
+    t.checkExpect(lineEngine.reached, 150);
+  }
+
+  //test for progressive
+  void testProgressive(Tester t) {
+    this.initData();
+    this.engine.progressive(2);
+    t.checkExpect(this.engine.budget, 2);
+    t.checkExpect(this.engine.reached, 5);
+    t.checkExpect(this.engine.settled, true);
+    t.checkExpect(this.engine.tail, 5);
+    this.engine.progressive(0);
+    t.checkExpect(this.engine.budget, 0);
+  }
+
+  //test for restart, and rotate and moveSource in progressive mode
+  void testRestart(Tester t) {
+    this.initData();
+    this.engine.progressive(2);
+    int[] powered = this.engine.queue;
+    t.checkExpect(this.engine.rotate(1, 2), false);
+    // nothing changes until power advances
+    t.checkExpect(this.engine.reached, 5);
+    t.checkExpect(this.board.has(4, PackedBoard.POWERED), true);
+    t.checkExpect(this.engine.settled, false);
+    t.checkExpect(this.engine.cut, powered);
+    t.checkExpect(this.engine.drainTail, 5);
+    this.engine.advance();
+    // a change while switching off carries on switching off the same tiles
+    this.engine.moveSource(2);
+    t.checkExpect(this.engine.source, 2);
+    t.checkExpect(this.engine.cut, powered);
+    t.checkExpect(this.engine.drainHead, 2);
+    t.checkExpect(this.engine.drainTail, 5);
+  }
+
+  //test for advance and light
+  void testAdvance(Tester t) {
+    this.initData();
+    this.engine.progressive(2);
+    this.engine.rotate(5, 3);
+    t.checkExpect(this.engine.advance(), false);
+    t.checkExpect(this.engine.reached, 3);
+    t.checkExpect(this.engine.advance(), false);
+    t.checkExpect(this.engine.reached, 1);
+    // the last tiles switch off and power starts again from the source
+    t.checkExpect(this.engine.advance(), false);
+    t.checkExpect(this.board.has(0, PackedBoard.POWERED), true);
+    t.checkExpect(this.board.has(1, PackedBoard.POWERED), true);
+    t.checkExpect(this.board.has(2, PackedBoard.POWERED), false);
+    t.checkExpect(this.engine.advance(), false);
+    t.checkExpect(this.engine.advance(), false);
+    t.checkExpect(this.engine.advance(), true);
+    t.checkExpect(this.engine.allPowered(), true);
+    t.checkExpect(this.engine.parent[5], 4);
+    t.checkExpect(this.engine.isVisited(5), true);
+    ConnectivityEngine fresh = new ConnectivityEngine(new PackedBoard(3, 2));
+    fresh.light(3, 3);
+    t.checkExpect(fresh.queue[0], 3);
+    t.checkExpect(fresh.tail, 1);
+    t.checkExpect(fresh.reached, 1);
+    t.checkExpect(fresh.board.has(3, PackedBoard.POWERED), true);
+  }
+
+  //test for progressive power on random boards against full searches
+  void testAdvanceRandom(Tester t) {
+    Random rand = new Random(8);
+    PackedBoard random = new PackedBoard(7, 5);
+    PackedBoard check = new PackedBoard(7, 5);
+    for (int i = 0; i < random.cells.length; i++) {
+      random.set(i, rand.nextInt(16));
+    }
+    ConnectivityEngine progressive = new ConnectivityEngine(random);
+    ConnectivityEngine full = new ConnectivityEngine(check);
+    progressive.powerFrom(17);
+    progressive.progressive(3);
+    boolean same = true;
+    for (int move = 0; move < 300; move++) {
+      progressive.rotate(rand.nextInt(random.cells.length), 1 + rand.nextInt(3));
+      // sometimes power has not settled before the next change
+      for (int step = rand.nextInt(30); step > 0; step--) {
+        progressive.advance();
+      }
+      if (progressive.settled) {
+        System.arraycopy(random.cells, 0, check.cells, 0, random.cells.length);
+        full.powerFrom(17);
+        same = same && Arrays.equals(random.cells, check.cells)
+            && progressive.reached == full.reached;
+      }
+    }
+    t.checkExpect(same, true);
+  }
+
+  //test for parallelPowerFrom, ExpandTask and MarkTask against a sequential search
+  void testParallelPowerFrom(Tester t) {
+    PuzzleEngine game = new PuzzleEngine(300, 220, new Random(9));
+    game.initBoard();
+    game.buildMST(game.board);
+    game.visualiseConnections();
+    for (int i = 0; i < 40; i++) {
+      game.board.rotate(i * 1650, 1);
+    }
+    PackedBoard check = new PackedBoard(300, 220);
+    System.arraycopy(game.board.cells, 0, check.cells, 0, check.cells.length);
+    ConnectivityEngine sequential = new ConnectivityEngine(check);
+    ConnectivityEngine parallel = new ConnectivityEngine(game.board);
+    parallel.pool = new ForkJoinPool(3);
+    t.checkExpect(parallel.powerFrom(31000), sequential.powerFrom(31000));
+    t.checkExpect(parallel.reached, sequential.reached);
+    t.checkExpect(parallel.reached > ExpandTask.GRAIN, true);
+    t.checkExpect(Arrays.equals(game.board.cells, check.cells), true);
+    // every powered tile hangs off a powered neighbour it connects to,
+    // and is listed once in the queue
+    boolean tree = true;
+    boolean[] listed = new boolean[check.cells.length];
+    for (int i = 0; i < parallel.reached; i++) {
+      int tile = parallel.queue[i];
+      int from = parallel.parent[tile];
+      tree = tree && !listed[tile] && from >= 0 && parallel.isVisited(tile)
+          && (tile == 31000 || game.board.connects(tile, this.direction(game.board, tile, from)));
+      listed[tile] = true;
+    }
+    t.checkExpect(tree, true);
+    // incremental rotations carry on from the parallel search
+    parallel.rotate(31000, 1);
+    sequential.rotate(31000, 1);
+    t.checkExpect(parallel.reached, sequential.reached);
+    // with changes tracked, the powered bits go through the board
+    game.board.trackChanges();
+    parallel.powerFrom(0);
+    t.checkExpect(game.board.dirtyCount > 0, true);
+    sequential.powerFrom(0);
+    t.checkExpect(Arrays.equals(game.board.cells, check.cells), true);
+    parallel.pool.shutdown();
+  }
+
+  //returns the direction from a tile to its neighbour, or 0 if they are not neighbours
+  int direction(PackedBoard b, int tile, int other) {
+    for (int dir = PackedBoard.LEFT; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+      if (b.neighbour(tile, dir) == other) {
+        return dir;
+      }
+    }
+    return 0;
+  }
+
+  //test for claim and mark
+  void testClaim(Tester t) {
+    this.initData();
+    this.engine.powerFrom(0);
+    t.checkExpect(this.engine.claim(5), true);
+    t.checkExpect(this.engine.claim(5), false);
+    t.checkExpect(this.engine.claim(0), false);
+    t.checkExpect(this.engine.isVisited(5), true);
+    this.engine.mark(5, false);
+    t.checkExpect(this.board.has(5, PackedBoard.POWERED), true);
+    this.engine.visited[0] &= ~1L;
+    this.board.trackChanges();
+    this.engine.mark(0, true);
+    t.checkExpect(this.board.has(0, PackedBoard.POWERED), false);
+    t.checkExpect(this.engine.parent[0], -1);
+    t.checkExpect(this.board.dirtyCount, 1);
+  }
+}
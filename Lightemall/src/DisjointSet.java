@@ -0,0 +1,121 @@
+import tester.*;
+
+//represents a union-find structure over the tiles 0 .. size - 1,
+//with path halving in find and union by rank
+class DisjointSet {
+  // the parent of each element, where roots are their own parent
+  int[] parent;
+  // an upper bound on the height of the tree under each root
+  byte[] rank;
+  // the number of disjoint sets
+  int sets;
+
+  DisjointSet(int size) {
+    this.parent = new int[size];
+    this.rank = new byte[size];
+    this.reset();
+  }
+
+  //puts every element back in its own set
+  //EFFECT: resets parent, rank and sets so the structure can be reused
+  void reset() {
+    for (int i = 0; i < this.parent.length; i++) {
+      this.parent[i] = i;
+      this.rank[i] = 0;
+    }
+    this.sets = this.parent.length;
+  }
+
+  //finds the representative of an element
+  //EFFECT: points every other node on the way to its grandparent
+  int find(int node) {
+    while (this.parent[node] != node) {
+      this.parent[node] = this.parent[this.parent[node]];
+      node = this.parent[node];
+    }
+    return node;
+  }
+
+  //determines if two elements are in the same set
+  boolean connected(int x, int y) {
+    return this.find(x) == this.find(y);
+  }
+
+  //joins the sets of two elements, hanging the shorter tree under the taller one
+  //returns false if they were already in the same set
+  //EFFECT: links one representative to the other
+  boolean union(int x, int y) {
+    int xRep = this.find(x);
+    int yRep = this.find(y);
+    if (xRep == yRep) {
+      return false;
+    }
+    if (this.rank[xRep] < this.rank[yRep]) {
+      this.parent[xRep] = yRep;
+    } else if (this.rank[xRep] > this.rank[yRep]) {
+      this.parent[yRep] = xRep;
+    } else {
+      this.parent[yRep] = xRep;
+      this.rank[xRep] += 1;
+    }
+    this.sets -= 1;
+    return true;
+  }
+}
+
+//examples class for testing
+class ExamplesDisjointSet {
+  DisjointSet set;
+
+  //initialises data
+  void initData() {
+    this.set = new DisjointSet(6);
+  }
+
+  //test for find
+  void testFind(Tester t) {
+    this.initData();
+    t.checkExpect(this.set.find(3), 3);
+    this.set.parent[3] = 2;
+    this.set.parent[2] = 1;
+    this.set.parent[1] = 0;
+    t.checkExpect(this.set.find(3), 0);
+    // path halving pointed 3 at its grandparent
+    t.checkExpect(this.set.parent[3], 1);
+    t.checkExpect(this.set.find(3), 0);
+    t.checkExpect(this.set.parent[3], 0);
+  }
+
+  //test for union and connected
+  void testUnion(Tester t) {
+    this.initData();
+    t.checkExpect(this.set.connected(0, 1), false);
+    t.checkExpect(this.set.union(0, 1), true);
+    t.checkExpect(this.set.connected(0, 1), true);
+    t.checkExpect(this.set.rank[0], (byte) 1);
+    t.checkExpect(this.set.union(2, 0), true);
+    // the shorter tree is hung under the taller one
+    t.checkExpect(this.set.parent[2], 0);
+    t.checkExpect(this.set.union(1, 2), false);
+    t.checkExpect(this.set.sets, 4);
+  }
+
+  //test for reset
+  void testReset(Tester t) {
+    this.initData();
+    this.set.union(4, 5);
+    this.set.reset();
+    t.checkExpect(this.set.connected(4, 5), false);
+    t.checkExpect(this.set.sets, 6);
+    t.checkExpect(this.set.rank, new byte[6]);
+  }
+
+  //test that long chains do not overflow the stack
+  void testLongChain(Tester t) {
+    DisjointSet big = new DisjointSet(1000000);
+    for (int i = 1; i < 1000000; i++) {
+      big.parent[i] = i - 1;
+    }
+    t.checkExpect(big.find(999999), 0);
+  }
+}
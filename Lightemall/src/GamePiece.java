@@ -3,7 +3,12 @@ import java.awt.Color;
 import javalib.worldimages.*;
 
 //represents a single tile in the game
+//(the board itself is stored in a PackedBoard, and pieces are loaded from it as views)
 class GamePiece {
+  // the wire colours of powered and unpowered pieces
+  static final Color POWERED_COLOR = new Color(255, 0, 0);
+  static final Color UNPOWERED_COLOR = new Color(0, 255, 0);
+
   // in logical coordinates, with the origin
   // at the top-left corner of the screen
   int row;
@@ -85,9 +90,9 @@ class GamePiece {
   //Determines the colour of a wire
   Color wireColor() {
     if (this.powered) {
-      return new Color(255, 0, 0);
+      return POWERED_COLOR;
     } else {
-      return new Color(0, 255, 0);
+      return UNPOWERED_COLOR;
     }
   }
 
@@ -0,0 +1,426 @@
+import tester.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//represents one game hosted by the server: an engine whose moves are played
+//one at a time, however many connections send them
+class Session {
+  long id;
+  PuzzleEngine engine;
+  // the moves that changed the board
+  long moves;
+
+  Session(long id, int width, int height, long seed) {
+    this.id = id;
+    this.engine = new PuzzleEngine(width, height, new Random(seed));
+    this.engine.generate();
+    this.moves = 0;
+  }
+
+  //plays the move code, and returns whether it changed the board, the
+  //tiles now powered and whether the puzzle is solved
+  //EFFECT: plays the move on the engine and counts it if it changed the board
+  synchronized String play(int move) {
+    boolean changed = this.engine.play(move);
+    if (changed) {
+      this.moves += 1;
+    }
+    return (changed ? 1 : 0) + " " + this.engine.power.reached + " "
+        + (this.engine.isSolved() ? 1 : 0);
+  }
+
+  //returns the board's size, the station's position, the tiles powered,
+  //whether the puzzle is solved, and the moves played
+  synchronized String state() {
+    return this.engine.width + " " + this.engine.height + " " + this.engine.powerRow + " "
+        + this.engine.powerCol + " " + this.engine.power.reached + " "
+        + (this.engine.isSolved() ? 1 : 0) + " " + this.moves;
+  }
+
+  //returns the wires of every tile as one hex digit each, in index order
+  synchronized String wires() {
+    byte[] cells = this.engine.board.cells;
+    char[] digits = new char[cells.length];
+    for (int i = 0; i < cells.length; i++) {
+      digits[i] = Character.forDigit(cells[i] & PackedBoard.WIRES, 16);
+    }
+    return new String(digits);
+  }
+}
+
+//represents the sessions of a server, spread over shards by id so that
+//connections creating, finding and closing sessions only contend when
+//their ids land in the same shard
+class SessionRegistry {
+  static final int SHARDS = 64;
+
+  ArrayList<HashMap<Long, Session>> shards;
+  AtomicLong nextId;
+
+  SessionRegistry() {
+    this.shards = new ArrayList<HashMap<Long, Session>>();
+    for (int i = 0; i < SHARDS; i++) {
+      this.shards.add(new HashMap<Long, Session>());
+    }
+    this.nextId = new AtomicLong(1);
+  }
+
+  //returns the shard the session with the given id belongs in
+  HashMap<Long, Session> shard(long id) {
+    return this.shards.get((int) (id ^ (id >>> 32)) & (SHARDS - 1));
+  }
+
+  //creates a session with a newly generated puzzle and a new id
+  //EFFECT: adds the session to its shard
+  Session create(int width, int height, long seed) {
+    Session session = new Session(this.nextId.getAndIncrement(), width, height, seed);
+    HashMap<Long, Session> shard = this.shard(session.id);
+    synchronized (shard) {
+      shard.put(session.id, session);
+    }
+    return session;
+  }
+
+  //returns the session with the given id, or null if there is none
+  Session get(long id) {
+    HashMap<Long, Session> shard = this.shard(id);
+    synchronized (shard) {
+      return shard.get(id);
+    }
+  }
+
+  //removes the session with the given id, returning whether there was one
+  //EFFECT: removes the session from its shard
+  boolean remove(long id) {
+    HashMap<Long, Session> shard = this.shard(id);
+    synchronized (shard) {
+      return shard.remove(id) != null;
+    }
+  }
+
+  //returns the number of sessions
+  int size() {
+    int size = 0;
+    for (HashMap<Long, Session> shard : this.shards) {
+      synchronized (shard) {
+        size += shard.size();
+      }
+    }
+    return size;
+  }
+}
+
+//represents a headless server hosting many games in one virtual machine,
+//for clients on the same machine; each connection sends one command per
+//line and gets one reply per line, and is served on its own thread:
+//  new WIDTH HEIGHT SEED   ok ID
+//  rotate ID TILE          ok CHANGED REACHED SOLVED
+//  move ID DIRECTION       ok CHANGED REACHED SOLVED, direction as a key name
+//  state ID                ok WIDTH HEIGHT ROW COL REACHED SOLVED MOVES
+//  board ID                ok WIRES, one hex digit per tile
+//  close ID                ok
+//  stats                   ok SESSIONS MOVES NANOS, the moves played since start
+//  quit                    closes the connection
+//anything else gets error and a reason
+class GameServer {
+  // the most tiles a session may have
+  static final int MAX_TILES = 1 << 22;
+
+  SessionRegistry sessions;
+  // runs the accepting loop and every connection
+  ExecutorService threads;
+  ServerSocket socket;
+  // the connections open now
+  Set<Socket> clients;
+  // the moves that changed a board, over all sessions, and when counting began
+  LongAdder moves;
+  long started;
+
+  GameServer(SessionRegistry sessions) {
+    this.sessions = sessions;
+    this.threads = Executors.newCachedThreadPool();
+    this.socket = null;
+    this.clients = ConcurrentHashMap.newKeySet();
+    this.moves = new LongAdder();
+    this.started = System.nanoTime();
+  }
+
+  //serves games on the port given as the first argument, or 7341
+  public static void main(String[] args) {
+    GameServer server = new GameServer(new SessionRegistry());
+    server.start(args.length > 0 ? Integer.parseInt(args[0]) : 7341);
+    System.out.println("serving LightEmAll on port " + server.socket.getLocalPort());
+  }
+
+  //starts accepting connections on the loopback address, on the given port,
+  //or any free one if it is 0
+  //EFFECT: opens the socket and starts the accepting thread
+  void start(int port) {
+    try {
+      this.socket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.threads.execute(new AcceptLoop(this));
+  }
+
+  //EFFECT: stops accepting, closes every connection and stops the threads
+  void close() {
+    try {
+      if (this.socket != null) {
+        this.socket.close();
+      }
+      for (Socket client : this.clients) {
+        client.close();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.threads.shutdown();
+  }
+
+  //reads commands from the client and writes a reply to each, flushing
+  //whenever no more commands are waiting, until the client quits or leaves
+  //EFFECT: plays the commands and closes the client
+  void serve(Socket client) {
+    this.clients.add(client);
+    try (Socket open = client;
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(open.getInputStream(), StandardCharsets.US_ASCII));
+        BufferedWriter out = new BufferedWriter(
+            new OutputStreamWriter(open.getOutputStream(), StandardCharsets.US_ASCII))) {
+      for (String line = in.readLine(); line != null && !line.equals("quit");
+          line = in.readLine()) {
+        out.write(this.handle(line));
+        out.write('\n');
+        if (!in.ready()) {
+          out.flush();
+        }
+      }
+    } catch (IOException e) {
+      // the client went away, or the server is closing
+    } finally {
+      this.clients.remove(client);
+    }
+  }
+
+  //returns the reply to one command
+  //EFFECT: creates, plays or closes sessions as the command says
+  String handle(String line) {
+    String[] words = line.trim().split(" +");
+    try {
+      if (words[0].equals("new") && words.length == 4) {
+        int width = Integer.parseInt(words[1]);
+        int height = Integer.parseInt(words[2]);
+        if (width < 2 || height < 2 || (long) width * height > MAX_TILES) {
+          return "error bad size";
+        }
+        return "ok " + this.sessions.create(width, height, Long.parseLong(words[3])).id;
+      } else if (words[0].equals("stats") && words.length == 1) {
+        return "ok " + this.sessions.size() + " " + this.moves.sum() + " "
+            + (System.nanoTime() - this.started);
+      } else if (words.length < 2) {
+        return "error bad command";
+      }
+      long id = Long.parseLong(words[1]);
+      if (words[0].equals("close") && words.length == 2) {
+        return this.sessions.remove(id) ? "ok" : "error no session " + id;
+      }
+      Session session = this.sessions.get(id);
+      if (session == null) {
+        return "error no session " + id;
+      } else if (words[0].equals("rotate") && words.length == 3) {
+        return this.play(session, PuzzleEngine.rotateMove(Integer.parseInt(words[2])));
+      } else if (words[0].equals("move") && words.length == 3) {
+        return this.play(session, PuzzleEngine.stationMove(PackedBoard.direction(words[2])));
+      } else if (words[0].equals("state") && words.length == 2) {
+        return "ok " + session.state();
+      } else if (words[0].equals("board") && words.length == 2) {
+        return "ok " + session.wires();
+      }
+      return "error bad command";
+    } catch (NumberFormatException e) {
+      return "error bad number";
+    }
+  }
+
+  //returns the reply to playing the move in the session
+  //EFFECT: plays the move and counts it if it changed the board
+  String play(Session session, int move) {
+    String reply = session.play(move);
+    if (reply.charAt(0) == '1') {
+      this.moves.increment();
+    }
+    return "ok " + reply;
+  }
+}
+
+//represents the thread that accepts connections and hands each to a
+//thread of its own
+class AcceptLoop implements Runnable {
+  GameServer server;
+
+  AcceptLoop(GameServer server) {
+    this.server = server;
+  }
+
+  //EFFECT: serves every connection until the socket is closed
+  public void run() {
+    try {
+      while (true) {
+        Socket client = this.server.socket.accept();
+        client.setTcpNoDelay(true);
+        this.server.threads.execute(new Connection(this.server, client));
+      }
+    } catch (IOException e) {
+      // the socket was closed
+    }
+  }
+}
+
+//represents serving one connection
+class Connection implements Runnable {
+  GameServer server;
+  Socket client;
+
+  Connection(GameServer server, Socket client) {
+    this.server = server;
+    this.client = client;
+  }
+
+  //EFFECT: serves the connection until it ends
+  public void run() {
+    this.server.serve(this.client);
+  }
+}
+
+//examples class for testing
+class ExamplesGameServer {
+  SessionRegistry sessions;
+  GameServer server;
+
+  //initialises a server with no sessions, not yet listening
+  void initData() {
+    this.sessions = new SessionRegistry();
+    this.server = new GameServer(this.sessions);
+  }
+
+  //test for Session's play, state and wires
+  void testSession(Tester t) {
+    Session session = new Session(3, 6, 5, 11);
+    PuzzleEngine same = new PuzzleEngine(6, 5, new Random(11));
+    same.generate();
+    t.checkExpect(session.engine.board.cells, same.board.cells);
+    same.rotate(7);
+    t.checkExpect(session.play(PuzzleEngine.rotateMove(7)), "1 " + same.power.reached + " 0");
+    t.checkExpect(session.play(PuzzleEngine.rotateMove(30)), "0 " + same.power.reached + " 0");
+    t.checkExpect(session.state(), "6 5 0 0 " + same.power.reached + " 0 1");
+    String wires = session.wires();
+    t.checkExpect(wires.length(), 30);
+    t.checkExpect(Character.digit(wires.charAt(7), 16), same.board.wires(7));
+  }
+
+  //test for SessionRegistry's create, get, remove, size and shard
+  void testRegistry(Tester t) {
+    this.initData();
+    Session first = this.sessions.create(4, 4, 1);
+    Session second = this.sessions.create(4, 4, 2);
+    t.checkExpect(first.id, 1L);
+    t.checkExpect(second.id, 2L);
+    t.checkExpect(this.sessions.get(2), second);
+    t.checkExpect(this.sessions.size(), 2);
+    // consecutive ids land in different shards
+    t.checkExpect(this.sessions.shard(1) != this.sessions.shard(2), true);
+    t.checkExpect(this.sessions.shard(1), this.sessions.shard(1 + SessionRegistry.SHARDS));
+    t.checkExpect(this.sessions.remove(1), true);
+    t.checkExpect(this.sessions.remove(1), false);
+    t.checkExpect(this.sessions.get(1), null);
+    t.checkExpect(this.sessions.size(), 1);
+  }
+
+  //test for handle and play
+  void testHandle(Tester t) {
+    this.initData();
+    t.checkExpect(this.server.handle("new 6 5 11"), "ok 1");
+    Session session = this.sessions.get(1);
+    PuzzleEngine same = new PuzzleEngine(6, 5, new Random(11));
+    same.generate();
+    same.rotate(7);
+    t.checkExpect(this.server.handle("rotate 1 7"), "ok 1 " + same.power.reached + " 0");
+    t.checkExpect(this.server.handle("  state   1 "), "ok " + session.state());
+    t.checkExpect(this.server.handle("move 1 sideways"), "ok 0 " + same.power.reached + " 0");
+    t.checkExpect(this.server.handle("board 1"), "ok " + session.wires());
+    t.checkExpect(this.server.handle("stats").startsWith("ok 1 1 "), true);
+    t.checkExpect(this.server.handle("close 1"), "ok");
+    t.checkExpect(this.server.handle("state 1"), "error no session 1");
+    t.checkExpect(this.server.handle("new 1 5 11"), "error bad size");
+    t.checkExpect(this.server.handle("new 5000 5000 11"), "error bad size");
+    t.checkExpect(this.server.handle("new 6 x 11"), "error bad number");
+    t.checkExpect(this.server.handle("rotate"), "error bad command");
+    t.checkExpect(this.server.handle("new 6 5 11"), "ok 2");
+    t.checkExpect(this.server.handle("spin 2 7"), "error bad command");
+  }
+
+  //test for start, serve and close over the loopback address, with
+  //several clients at once and commands sent ahead of their replies
+  void testServe(Tester t) {
+    this.initData();
+    this.server.start(0);
+    int port = this.server.socket.getLocalPort();
+    ArrayList<Socket> clients = new ArrayList<Socket>();
+    ArrayList<BufferedReader> readers = new ArrayList<BufferedReader>();
+    ArrayList<String> replies = new ArrayList<String>();
+    try {
+      for (int c = 0; c < 8; c++) {
+        Socket client = new Socket(InetAddress.getLoopbackAddress(), port);
+        clients.add(client);
+        readers.add(new BufferedReader(
+            new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII)));
+        client.getOutputStream().write(("new 10 10 " + c + "\n")
+            .getBytes(StandardCharsets.US_ASCII));
+      }
+      // every session exists before any client asks for the stats
+      for (BufferedReader in : readers) {
+        replies.add(in.readLine());
+      }
+      for (int c = 0; c < 8; c++) {
+        BufferedReader in = readers.get(c);
+        // the next commands go together, ahead of their replies
+        clients.get(c).getOutputStream().write(("rotate " + replies.get(c).substring(3)
+            + " 5\nstats\nquit\n").getBytes(StandardCharsets.US_ASCII));
+        replies.add(in.readLine());
+        t.checkExpect(in.readLine().startsWith("ok 8 "), true);
+        t.checkExpect(in.readLine(), null);
+        clients.get(c).close();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    t.checkExpect(this.sessions.size(), 8);
+    t.checkExpect(replies.size(), 16);
+    for (int c = 0; c < 8; c++) {
+      t.checkExpect(replies.get(c).startsWith("ok "), true);
+      t.checkExpect(replies.get(8 + c).startsWith("ok 1 "), true);
+    }
+    t.checkExpect(this.server.moves.sum(), 8L);
+    this.server.close();
+    t.checkExpect(this.server.socket.isClosed(), true);
+  }
+}
@@ -0,0 +1,102 @@
+import tester.*;
+
+//represents a list of undirected edges between tiles,
+//stored as parallel arrays of tile indices and weights
+class GridEdges {
+  // edge weights are drawn from 0 to MAX_WEIGHT - 1
+  static final int MAX_WEIGHT = 50;
+
+  // the tile indices at either end of each edge, where from is
+  // always the left or top end and to the right or bottom end
+  int[] from;
+  int[] to;
+  int[] weight;
+  // the number of edges added so far
+  int size;
+
+  GridEdges(int capacity) {
+    this.from = new int[capacity];
+    this.to = new int[capacity];
+    this.weight = new int[capacity];
+    this.size = 0;
+  }
+
+  //adds an edge at the end of this list
+  //EFFECT: stores the edge in the next free slot and increments size
+  void add(int from, int to, int weight) {
+    this.from[this.size] = from;
+    this.to[this.size] = to;
+    this.weight[this.size] = weight;
+    this.size += 1;
+  }
+
+  //sorts the edges from smallest to largest weight, using a counting sort
+  //over the bounded weight range; edges of equal weight keep their order
+  //EFFECT: reorders from, to and weight
+  void sortByWeight() {
+    int[] starts = new int[MAX_WEIGHT + 1];
+    for (int i = 0; i < this.size; i++) {
+      starts[this.weight[i] + 1] += 1;
+    }
+    for (int w = 1; w <= MAX_WEIGHT; w++) {
+      starts[w] += starts[w - 1];
+    }
+    int[] sortedFrom = new int[this.from.length];
+    int[] sortedTo = new int[this.to.length];
+    int[] sortedWeight = new int[this.weight.length];
+    for (int i = 0; i < this.size; i++) {
+      int slot = starts[this.weight[i]];
+      starts[this.weight[i]] += 1;
+      sortedFrom[slot] = this.from[i];
+      sortedTo[slot] = this.to[i];
+      sortedWeight[slot] = this.weight[i];
+    }
+    this.from = sortedFrom;
+    this.to = sortedTo;
+    this.weight = sortedWeight;
+  }
+}
+
+//examples class for testing
+class ExamplesGridEdges {
+  GridEdges edges;
+
+  //initialises data
+  void initData() {
+    this.edges = new GridEdges(4);
+    this.edges.add(0, 1, 30);
+    this.edges.add(0, 2, 5);
+    this.edges.add(1, 3, 30);
+    this.edges.add(2, 3, 0);
+  }
+
+  //test for add
+  void testAdd(Tester t) {
+    this.initData();
+    t.checkExpect(this.edges.size, 4);
+    t.checkExpect(this.edges.from, new int[] {0, 0, 1, 2});
+    t.checkExpect(this.edges.to, new int[] {1, 2, 3, 3});
+    t.checkExpect(this.edges.weight, new int[] {30, 5, 30, 0});
+  }
+
+  //test for sortByWeight
+  void testSortByWeight(Tester t) {
+    this.initData();
+    this.edges.sortByWeight();
+    t.checkExpect(this.edges.weight, new int[] {0, 5, 30, 30});
+    t.checkExpect(this.edges.from, new int[] {2, 0, 0, 1});
+    t.checkExpect(this.edges.to, new int[] {3, 2, 1, 3});
+    t.checkExpect(this.edges.size, 4);
+  }
+
+  //test for sortByWeight on the largest weights
+  void testSortByWeightBounds(Tester t) {
+    GridEdges bounds = new GridEdges(3);
+    bounds.add(0, 1, GridEdges.MAX_WEIGHT - 1);
+    bounds.add(1, 2, 0);
+    bounds.add(2, 3, GridEdges.MAX_WEIGHT - 1);
+    bounds.sortByWeight();
+    t.checkExpect(bounds.weight, new int[] {0, GridEdges.MAX_WEIGHT - 1, GridEdges.MAX_WEIGHT - 1});
+    t.checkExpect(bounds.from, new int[] {1, 0, 2});
+  }
+}
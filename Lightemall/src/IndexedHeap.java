@@ -0,0 +1,153 @@
+import tester.*;
+
+//represents a binary min-heap of the tiles 0 .. size - 1 keyed by ints,
+//which knows where each tile is so its key can be lowered in place
+class IndexedHeap {
+  // the tiles in heap order
+  int[] heap;
+  // the key of each tile, kept after it leaves the heap
+  int[] key;
+  // the position of each tile in heap, or -1 if it is not in the heap
+  int[] position;
+  int size;
+
+  IndexedHeap(int capacity) {
+    this.heap = new int[capacity];
+    this.key = new int[capacity];
+    this.position = new int[capacity];
+    for (int i = 0; i < capacity; i++) {
+      this.position[i] = -1;
+    }
+    this.size = 0;
+  }
+
+  //determines if the heap has no tiles in it
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  //determines if the tile is in the heap
+  boolean contains(int tile) {
+    return this.position[tile] >= 0;
+  }
+
+  //adds the tile with the given key, or lowers its key if it is already
+  //in the heap with a larger one
+  //EFFECT: updates heap, key and position
+  void offer(int tile, int newKey) {
+    if (this.position[tile] < 0) {
+      this.heap[this.size] = tile;
+      this.position[tile] = this.size;
+      this.key[tile] = newKey;
+      this.size += 1;
+      this.siftUp(this.size - 1);
+    } else if (newKey < this.key[tile]) {
+      this.key[tile] = newKey;
+      this.siftUp(this.position[tile]);
+    }
+  }
+
+  //removes and returns the tile with the smallest key
+  //EFFECT: updates heap and position
+  int poll() {
+    int top = this.heap[0];
+    this.size -= 1;
+    this.position[top] = -1;
+    if (this.size > 0) {
+      this.place(this.heap[this.size], 0);
+      this.siftDown(0);
+    }
+    return top;
+  }
+
+  //EFFECT: moves the tile at the given slot up until its parent is no larger
+  void siftUp(int slot) {
+    int tile = this.heap[slot];
+    while (slot > 0 && this.key[this.heap[(slot - 1) / 2]] > this.key[tile]) {
+      this.place(this.heap[(slot - 1) / 2], slot);
+      slot = (slot - 1) / 2;
+    }
+    this.place(tile, slot);
+  }
+
+  //EFFECT: moves the tile at the given slot down until no child is smaller
+  void siftDown(int slot) {
+    int tile = this.heap[slot];
+    while (2 * slot + 1 < this.size) {
+      int child = 2 * slot + 1;
+      if (child + 1 < this.size && this.key[this.heap[child + 1]] < this.key[this.heap[child]]) {
+        child += 1;
+      }
+      if (this.key[this.heap[child]] >= this.key[tile]) {
+        break;
+      }
+      this.place(this.heap[child], slot);
+      slot = child;
+    }
+    this.place(tile, slot);
+  }
+
+  //EFFECT: puts the tile in the given slot of the heap
+  void place(int tile, int slot) {
+    this.heap[slot] = tile;
+    this.position[tile] = slot;
+  }
+}
+
+//examples class for testing
+class ExamplesIndexedHeap {
+  IndexedHeap heap;
+
+  //initialises a heap holding tiles 0 to 3 keyed 40, 10, 30 and 20
+  void initData() {
+    this.heap = new IndexedHeap(6);
+    this.heap.offer(0, 40);
+    this.heap.offer(1, 10);
+    this.heap.offer(2, 30);
+    this.heap.offer(3, 20);
+  }
+
+  //test for offer, contains and isEmpty
+  void testOffer(Tester t) {
+    this.initData();
+    t.checkExpect(this.heap.size, 4);
+    t.checkExpect(this.heap.heap[0], 1);
+    t.checkExpect(this.heap.contains(3), true);
+    t.checkExpect(this.heap.contains(4), false);
+    this.heap.offer(0, 5);
+    t.checkExpect(this.heap.heap[0], 0);
+    // a larger key does not replace a smaller one
+    this.heap.offer(0, 50);
+    t.checkExpect(this.heap.key[0], 5);
+    t.checkExpect(this.heap.isEmpty(), false);
+    t.checkExpect(new IndexedHeap(2).isEmpty(), true);
+  }
+
+  //test for poll
+  void testPoll(Tester t) {
+    this.initData();
+    t.checkExpect(this.heap.poll(), 1);
+    t.checkExpect(this.heap.contains(1), false);
+    t.checkExpect(this.heap.key[1], 10);
+    this.heap.offer(4, 25);
+    t.checkExpect(this.heap.poll(), 3);
+    t.checkExpect(this.heap.poll(), 4);
+    t.checkExpect(this.heap.poll(), 2);
+    t.checkExpect(this.heap.poll(), 0);
+    t.checkExpect(this.heap.isEmpty(), true);
+  }
+
+  //test for siftUp, siftDown and place
+  void testSift(Tester t) {
+    this.initData();
+    this.heap.key[2] = 1;
+    this.heap.siftUp(this.heap.position[2]);
+    t.checkExpect(this.heap.heap[0], 2);
+    this.heap.key[2] = 100;
+    this.heap.siftDown(0);
+    t.checkExpect(this.heap.heap[0], 1);
+    t.checkExpect(this.heap.position[this.heap.heap[3]], 3);
+    this.heap.place(5, 4);
+    t.checkExpect(this.heap.position[5], 4);
+  }
+}
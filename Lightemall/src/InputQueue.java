@@ -0,0 +1,148 @@
+import tester.*;
+
+//represents tile rotations that were clicked but not yet applied,
+//summed per tile modulo 4 so a burst of clicks is applied as one batch
+class InputQueue {
+  // batches up to this many tiles update power around each tile,
+  // larger ones rotate everything and search power once
+  static final int INCREMENTAL_LIMIT = 32;
+  // marks a tile as already in the touched list
+  static final int LISTED = 4;
+
+  // the pending clockwise turns of each tile, modulo 4, plus LISTED
+  byte[] turns;
+  // the tiles with pending turns, in the order they were first clicked
+  int[] touched;
+  int count;
+
+  InputQueue(int size) {
+    this.turns = new byte[size];
+    this.touched = new int[size];
+    this.count = 0;
+  }
+
+  //adds clockwise turns of the tile at the given index to the batch
+  //EFFECT: updates turns, and the touched list the first time a tile is clicked
+  void rotate(int index, int rotations) {
+    int pending = this.turns[index];
+    if ((pending & LISTED) == 0) {
+      this.touched[this.count] = index;
+      this.count += 1;
+    }
+    this.turns[index] = (byte) (LISTED | ((pending + rotations) & 3));
+  }
+
+  //applies every pending rotation, updating power once for the batch,
+  //and returns the number of tiles that actually turned
+  //EFFECT: rotates tiles through the engine and empties the queue
+  int flush(ConnectivityEngine engine) {
+    int rotated = 0;
+    boolean incremental = this.count <= INCREMENTAL_LIMIT;
+    for (int i = 0; i < this.count; i++) {
+      int index = this.touched[i];
+      int rotations = this.turns[index] & 3;
+      this.turns[index] = 0;
+      if (rotations != 0) {
+        rotated += 1;
+        if (incremental) {
+          engine.rotate(index, rotations);
+        } else {
+          engine.board.rotate(index, rotations);
+        }
+      }
+    }
+    if (!incremental && rotated > 0) {
+      if (engine.budget > 0) {
+        engine.restart(engine.source);
+      } else {
+        engine.powerFrom(engine.source);
+      }
+    }
+    this.count = 0;
+    return rotated;
+  }
+}
+
+//examples class for testing
+class ExamplesInputQueue {
+  PackedBoard board;
+  ConnectivityEngine engine;
+  InputQueue queue;
+
+  //initialises a 3x1 board wired left to right, powered from the left
+  void initData() {
+    this.board = new PackedBoard(3, 1);
+    this.board.set(0, PackedBoard.RIGHT);
+    this.board.set(1, PackedBoard.LEFT | PackedBoard.RIGHT);
+    this.board.set(2, PackedBoard.LEFT);
+    this.engine = new ConnectivityEngine(this.board);
+    this.engine.powerFrom(0);
+    this.queue = new InputQueue(3);
+  }
+
+  //test for rotate
+  void testRotate(Tester t) {
+    this.initData();
+    this.queue.rotate(1, 1);
+    this.queue.rotate(2, 1);
+    this.queue.rotate(1, 1);
+    t.checkExpect(this.queue.count, 2);
+    t.checkExpect(this.queue.touched[0], 1);
+    t.checkExpect(this.queue.touched[1], 2);
+    t.checkExpect(this.queue.turns[1], (byte) (InputQueue.LISTED | 2));
+    this.queue.rotate(1, 2);
+    t.checkExpect(this.queue.turns[1], (byte) InputQueue.LISTED);
+    t.checkExpect(this.queue.count, 2);
+    // nothing is applied until the queue is flushed
+    t.checkExpect(this.board.wires(2), PackedBoard.LEFT);
+  }
+
+  //test for flush
+  void testFlush(Tester t) {
+    this.initData();
+    this.queue.rotate(1, 1);
+    this.queue.rotate(1, 3);
+    this.queue.rotate(2, 1);
+    t.checkExpect(this.queue.flush(this.engine), 1);
+    t.checkExpect(this.queue.count, 0);
+    t.checkExpect(this.queue.turns[1], (byte) 0);
+    t.checkExpect(this.board.wires(1), PackedBoard.LEFT | PackedBoard.RIGHT);
+    t.checkExpect(this.board.wires(2), PackedBoard.TOP);
+    t.checkExpect(this.board.has(2, PackedBoard.POWERED), false);
+    t.checkExpect(this.engine.reached, 2);
+  }
+
+  //test for flush on batches too large to update incrementally
+  void testFlushLarge(Tester t) {
+    PackedBoard line = new PackedBoard(40, 1);
+    for (int i = 0; i < 40; i++) {
+      line.set(i, PackedBoard.LEFT | PackedBoard.RIGHT);
+    }
+    ConnectivityEngine lineEngine = new ConnectivityEngine(line);
+    lineEngine.powerFrom(0);
+    InputQueue lineQueue = new InputQueue(40);
+    for (int i = 0; i < 40; i++) {
+      lineQueue.rotate(i, 2);
+    }
+    lineQueue.rotate(20, 1);
+    t.checkExpect(lineQueue.flush(lineEngine), 40);
+    t.checkExpect(lineEngine.reached, 20);
+    t.checkExpect(line.has(19, PackedBoard.POWERED), true);
+    t.checkExpect(line.has(21, PackedBoard.POWERED), false);
+    // in progressive mode a large batch only restarts power
+    lineEngine.progressive(8);
+    for (int i = 0; i < 40; i++) {
+      lineQueue.rotate(i, 2);
+    }
+    t.checkExpect(lineQueue.flush(lineEngine), 40);
+    t.checkExpect(lineEngine.settled, false);
+    t.checkExpect(lineEngine.reached, 20);
+    int ticks = 1;
+    while (!lineEngine.advance()) {
+      ticks += 1;
+    }
+    t.checkExpect(ticks, 5);
+    t.checkExpect(lineEngine.reached, 20);
+    t.checkExpect(line.has(19, PackedBoard.POWERED), true);
+  }
+}
@@ -0,0 +1,55 @@
+import tester.*;
+import java.util.Random;
+
+//represents Kruskal's algorithm over randomly weighted edges: every edge is
+//weighted, sorted, and added unless its ends are already joined
+class KruskalGenerator implements TreeGenerator {
+
+  //creates a list with every connection represented as an edge, each only once
+  //generates a random weight from 0 to GridEdges.MAX_WEIGHT - 1
+  //sorts the list according to weight from smallest to largest
+  GridEdges worklist(PackedBoard b, Random rand) {
+    GridEdges mstList = new GridEdges(2 * b.width * b.height - b.width - b.height);
+    for (int c = 0; c < b.height; c++) {
+      for (int r = 0; r < b.width; r++) {
+        int gp = b.index(r, c);
+        if (r != b.width - 1) {
+          mstList.add(gp, gp + 1, rand.nextInt(GridEdges.MAX_WEIGHT));
+        }
+        if (c != b.height - 1) {
+          mstList.add(gp, gp + b.width, rand.nextInt(GridEdges.MAX_WEIGHT));
+        }
+      }
+    }
+    mstList.sortByWeight();
+    return mstList;
+  }
+
+  //uses Kruskal's algorithm to create a minimum spanning tree
+  //EFFECT: Adds Edges into the tree
+  public void build(PackedBoard board, Random rand, GridEdges tree) {
+    DisjointSet representatives = new DisjointSet(board.cells.length);
+    GridEdges worklist = this.worklist(board, rand);
+    int treeSize = board.cells.length - 1;
+
+    for (int i = 0; i < worklist.size && tree.size < treeSize; i++) {
+      if (representatives.union(worklist.from[i], worklist.to[i])) {
+        tree.add(worklist.from[i], worklist.to[i], worklist.weight[i]);
+      }
+    }
+  }
+}
+
+//examples class for testing
+class ExamplesKruskalGenerator {
+  //test for KruskalGenerator's worklist
+  void testWorklist(Tester t) {
+    PackedBoard square = new PackedBoard(2, 2);
+    GridEdges worklist = new KruskalGenerator().worklist(square, new Random(2));
+    // every undirected edge appears once, sorted by weight
+    t.checkExpect(worklist.size, 4);
+    t.checkExpect(worklist.from, new int[] {0, 2, 0, 1});
+    t.checkExpect(worklist.to, new int[] {1, 3, 2, 3});
+    t.checkExpect(worklist.weight, new int[] {8, 17, 22, 40});
+  }
+}
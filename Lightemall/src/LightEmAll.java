@@ -1,256 +1,180 @@
-import java.util.ArrayList;
 import tester.*;
 import javalib.impworld.*;
 import java.awt.Color;
 import javalib.worldimages.*;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Random;
-import java.util.ArrayDeque;
-
-//represents an edge 
-class Edge {
-  GamePiece fromNode;
-  GamePiece toNode;
-  int weight;
-
-  Edge(GamePiece fromNode, GamePiece toNode, int weight) {
-    this.fromNode = fromNode;
-    this.toNode = toNode;
-    this.weight = weight;
-  }
-}
+import java.util.concurrent.ForkJoinPool;
 
-//world class for the game 
+//world class for the game, which draws a PuzzleEngine
+//and turns mouse clicks and key presses into its moves
 class LightEmAll extends World {
-  // a list of columns of GamePieces,
-  // i.e., represents the board in column-major order
-  ArrayList<ArrayList<GamePiece>> board;
-  // a list of all nodes
-  ArrayList<GamePiece> nodes;
-  // a list of edges of the minimum spanning tree
-  ArrayList<Edge> mst;
+  // the game being played
+  PuzzleEngine engine;
+  // the cached tile images used by makeScene
+  TileSprites sprites;
+  // the off-screen picture of the board redrawn by makeScene,
+  // or null to build the scene from tile images instead
+  BoardRaster raster;
+  // the visible part of the board, or null to show the whole board
+  Viewport viewport;
+  // the clicks waiting to be applied on the next tick or frame,
+  // or null to apply every click as it happens
+  InputQueue input;
+  // the moves played so far, which z undoes and y redoes,
+  // or null to keep no history
+  MoveLog history;
+  // the registry scenes, input and the engine's hot paths are timed in,
+  // or null to time nothing
+  Metrics metrics;
+  // the number of tiles drawn by the last scene
+  int rendered;
   // the width and height of the board
   int width;
   int height;
-  // the current location of the power station,
-  // as well as its effective radius
-  int powerRow;
-  int powerCol;
-  int radius;
-  Random rand;
 
   LightEmAll(int width, int height, Random rand) {
-    this.board = new ArrayList<ArrayList<GamePiece>>();
-    this.nodes = new ArrayList<GamePiece>();
-    this.mst = new ArrayList<Edge>();
+    this.engine = new PuzzleEngine(width, height, rand);
+    this.sprites = new TileSprites(30, 3);
+    this.raster = null;
+    this.viewport = null;
+    this.input = null;
+    this.history = null;
+    this.metrics = null;
+    this.rendered = 0;
     this.width = width;
     this.height = height;
-    this.powerRow = 0;
-    this.powerCol = 0;
-    this.radius = (width * height) / 3;
-    this.rand = rand;
   }
 
-  // Initialises the game board with interconnected GamePieces
-  //EFFECT: fills in a row (nodes) with "width" amount of GamePieces
-  //        Fills in a list of list of game pieces with "height" amount
-  //        adds all the nodes into the list
-  void initBoard() {
-    for (int c = 0; c < this.height; c++) {
-      ArrayList<GamePiece> rowList = new ArrayList<GamePiece>();
-      for (int r = 0; r < this.width; r++) {
-        GamePiece tempGame = 
-            new GamePiece(r, c, false, false, false, false, false, false);
-        tempGame.stationPowerUp(this.powerRow, this.powerCol);
-        rowList.add(tempGame);
-        this.nodes.add(tempGame);
-      }
-      this.board.add(rowList);
-    }
+  //switches makeScene to drawing into a persistent picture of the board,
+  //where each frame only draws the tiles that changed since the last one
+  //EFFECT: creates the raster and draws the whole board into it
+  void useRaster() {
+    this.raster = new BoardRaster(this.engine.board, 30, 3);
   }
 
-  //creates a list with every connection represented as an edge
-  //generates a random weight from 0 to 100
-  //sorts the list according to weight from smallest to largest
-  ArrayList<Edge> createMSTWorklist(ArrayList<ArrayList<GamePiece>> b) {
-    ArrayList<Edge> mstList = new ArrayList<Edge>();
-    for (int c = 0; c < this.height; c++) {
-      for (int r = 0; r < this.width; r++) {
-        GamePiece gp = b.get(c).get(r);
-        GamePiece next;
-        Edge e;
-        if (gp.row != 0) {
-          next = b.get(c).get(r - 1);
-          e = new Edge(gp, next, this.rand.nextInt(50));
-          mstList.add(e);
-        }
-        if (gp.col != 0) {
-          next = b.get(c - 1).get(r);
-          e = new Edge(gp, next, this.rand.nextInt(50));
-          mstList.add(e);
-        }
-        if (gp.row != this.width - 1) {
-          next = b.get(c).get(r + 1);
-          e = new Edge(gp, next, this.rand.nextInt(50));
-          mstList.add(e);
-        }
-        if (gp.col != this.height - 1) {
-          next = b.get(c + 1).get(r);
-          e = new Edge(gp, next, this.rand.nextInt(50));
-          mstList.add(e);
-        }
-      }
-    }
-    mstList.sort((e1, e2) -> (e1.weight - e2.weight));
-    return mstList;
+  //switches to showing only the part of the board that fits in a window
+  //of the given size in pixels, which can be scrolled and zoomed with keys
+  //EFFECT: creates the viewport at the top-left corner of the board
+  void useViewport(int windowWidth, int windowHeight) {
+    this.viewport = new Viewport(this.width, this.height, windowWidth, windowHeight, 30);
   }
 
-  //finds the representative of a node
-  GamePiece find(HashMap<GamePiece, GamePiece> representatives, GamePiece node) {
-    GamePiece parent = representatives.get(node);
-    if (parent == node) {
-      return node;
-    }
-    return find(representatives, parent);
+  //switches to buffering clicks and applying them as one batch
+  //on the next tick or frame
+  //EFFECT: creates the input queue
+  void useInputQueue() {
+    this.input = new InputQueue(this.engine.board.cells.length);
   }
 
-  //uses Kruskal's algorithm to create a minimum spanning tree
-  //EFFECT: Adds Edges into the mst list
-  void buildMST(ArrayList<ArrayList<GamePiece>> b) {
-    HashMap<GamePiece, GamePiece> representatives = new HashMap<GamePiece, GamePiece>();
-    ArrayList<Edge> worklist = this.createMSTWorklist(b);
-
-    for (GamePiece gp : this.nodes) {
-      representatives.put(gp, gp);
-    }
-
-    while (worklist.size() > 0) {
-      Edge cheapest = worklist.remove(0);
-      GamePiece x = cheapest.fromNode;
-      GamePiece y = cheapest.toNode;
-      GamePiece xRep = this.find(representatives, x);
-      GamePiece yRep = this.find(representatives, y);
-      if (!xRep.equals(yRep)) {
-        this.mst.add(cheapest);
-        representatives.put(xRep, yRep);
-      }
+  //applies the clicks buffered since the last tick or frame
+  //EFFECT: rotates the clicked tiles and updates power once
+  void applyInput() {
+    if (this.input != null && this.input.count > 0) {
+      this.input.flush(this.engine.power);
     }
   }
 
-  //creates a connections between connected nodes in a tree
-  //EFFECT: mutates the values of the fromNode and toNode
-  void visualiseConnections() {
-    for (Edge edge : this.mst) {
-      GamePiece fromNode = edge.fromNode;
-      GamePiece toNode = edge.toNode;
-
-      if (fromNode.row > toNode.row) {
-        fromNode.left = true;
-        toNode.right = true;
-      } else if (fromNode.row < toNode.row) {
-        fromNode.right = true;
-        toNode.left = true;
-      } else if (fromNode.col > toNode.col) {
-        fromNode.top = true;
-        toNode.bottom = true;
-      } else if (fromNode.col < toNode.col) {
-        fromNode.bottom = true;
-        toNode.top = true;
-      }
+  //rotates the tile at the given index, now or on the next batch
+  //EFFECT: rotates the tile and updates power, or queues the rotation
+  void rotateTile(int index) {
+    if (this.history != null) {
+      this.history.play(PuzzleEngine.rotateMove(index));
+    } else if (this.input != null) {
+      this.input.rotate(index, 1);
+    } else {
+      this.engine.rotate(index);
     }
   }
 
-  // Randomly rotates each GamePiece on the board
-  //EFFECT: randomly rotates every GamePiece in the board
-  //        initialises every gamepiece.powered to true if connected    
-  void randRotateBoard() {
-    for (int c = 0; c < this.height; c++) {
-      for (int r = 0; r < this.width; r++) {
-        GamePiece current = this.board.get(c).get(r);
-        current.rotate(this.rand.nextInt(3));
-      }
+  //applies buffered clicks on every tick, spreads power a little further
+  //in progressive mode, and dumps the metrics when they are due
+  //EFFECT: see applyInput, ConnectivityEngine's advance and Metrics' tick
+  public void onTick() {
+    this.applyInput();
+    if (this.engine.power.budget > 0) {
+      this.engine.power.advance();
+    }
+    if (this.metrics != null) {
+      this.metrics.tick(System.nanoTime());
     }
-    this.hasPath(this.board.get(this.powerCol).get(this.powerRow));
   }
 
+  //starts recording every move played from the board as it is now,
+  //so moves can be undone and redone; clicks are then applied one at a
+  //time rather than through the input queue
+  //EFFECT: creates the history
+  void useHistory() {
+    this.history = new MoveLog(this.engine);
+  }
 
-  //Check if there is a path from the source to every other cell on the board
-  //EFFECT: Updates powered status of GamePiece
-  boolean hasPath(GamePiece source) {
-    ArrayList<GamePiece> alreadySeen = new ArrayList<GamePiece>();
-    ArrayDeque<GamePiece> worklist = new ArrayDeque<GamePiece>();
-
-    for (int c = 0; c < this.height; c++) {
-      for (int r = 0; r < this.width; r++) {
-        this.board.get(c).get(r).powered = false;
-      }
-    }
-
-    worklist.addFirst(source);
+  //switches to spreading power over ticks, through at most budget tiles
+  //per tick, so no click stalls a frame however large the board is;
+  //the win message waits until power has finished spreading
+  //EFFECT: puts the engine's power search in progressive mode
+  void useProgressivePower(int budget) {
+    this.engine.power.progressive(budget);
+  }
 
-    while (!worklist.isEmpty()) {
-      GamePiece next = worklist.removeFirst();
-      //      next.powered = next.powerStation;
+  //switches full power searches of large boards, including the one that
+  //decides the win, to searching level by level on the pool
+  //EFFECT: gives the engine's power search the pool
+  void useParallelPower(ForkJoinPool pool) {
+    this.engine.power.pool = pool;
+  }
 
-      // Process neighbors of the current GamePiece
-      if (next.isLeftOk()) {
-        GamePiece left = board.get(next.col).get(next.row - 1);
-        if (!alreadySeen.contains(left) && next.hasAnyConnection(left, "left")) {
-          worklist.addLast(left);
-        }
-      }
-      if (next.isRightOk(this.width)) {
-        GamePiece right = board.get(next.col).get(next.row + 1);
-        if (!alreadySeen.contains(right) && next.hasAnyConnection(right, "right")) {
-          worklist.addLast(right);
-        }
-      }
-      if (next.isTopOk()) {
-        GamePiece top = board.get(next.col - 1).get(next.row);
-        if (!alreadySeen.contains(top) && next.hasAnyConnection(top, "up")) {
-          worklist.addLast(top);
-        }
-      }
-      if (next.isBottomOk(this.height)) {
-        GamePiece bottom = board.get(next.col + 1).get(next.row);
-        if (!alreadySeen.contains(bottom) && next.hasAnyConnection(bottom, "down")) {
-          worklist.addLast(bottom);
-        }
-      }
-      alreadySeen.add(next);
-    }
+  //starts timing board generation, power searches, scenes and input in the
+  //registry, which also appends a snapshot to its file on ticks it is due
+  //EFFECT: gives the game and its engine the registry
+  void useMetrics(Metrics metrics) {
+    this.metrics = metrics;
+    this.engine.metrics = metrics;
+  }
 
-    for (GamePiece gp : alreadySeen) {
-      gp.powerUp();
+  //makes the scene to display the current grid, timed if there are metrics
+  public WorldScene makeScene() {
+    if (this.metrics == null) {
+      return this.drawScene();
     }
-    // Check if all cells are visited
-    return alreadySeen.size() == this.width * this.height;
+    this.metrics.begin();
+    WorldScene ws = this.drawScene();
+    this.metrics.end(Metrics.SCENE, this.rendered);
+    return ws;
   }
 
-
-  //makes the scene to display the current grid
-  public WorldScene makeScene() {
+  //draws the scene of the current grid
+  //EFFECT: applies buffered clicks and sets rendered
+  WorldScene drawScene() {
+    this.applyInput();
+    if (this.viewport != null) {
+      return this.makeViewportScene();
+    }
     int tileSize = 30;
     int wireWidth = 3;
     WorldScene ws = new WorldScene(this.width * tileSize, this.height * tileSize);
-    WorldImage columnImage = new EmptyImage();
-    for (int c = 0; c < this.height; c++) {
-      WorldImage rowImage = new EmptyImage();
-      for (int r = 0; r < this.width; r++) {
-        GamePiece currPiece = this.board.get(c).get(r);
-        Color currPieceColor = currPiece.wireColor();
-        boolean hasPowerStation = (r == this.powerRow && c == this.powerCol);
-        WorldImage tileImage = currPiece.tileImage(
-            tileSize, wireWidth, currPieceColor, 
-            hasPowerStation);
-        rowImage = new BesideImage(rowImage, tileImage);
+    WorldImage columnImage;
+    if (this.raster != null) {
+      this.rendered = this.raster.redraw();
+      columnImage = this.raster.frame;
+    } else {
+      this.rendered = this.width * this.height;
+      columnImage = new EmptyImage();
+      this.sprites.resize(tileSize, wireWidth);
+      PackedBoard board = this.engine.board;
+      for (int c = 0; c < this.height; c++) {
+        WorldImage rowImage = new EmptyImage();
+        for (int r = 0; r < this.width; r++) {
+          WorldImage tileImage = this.sprites.sprite(board.get(board.index(r, c)));
+          rowImage = new BesideImage(rowImage, tileImage);
+        }
+        columnImage = new AboveImage(columnImage, rowImage);
       }
-      columnImage = new AboveImage(columnImage, rowImage);
     }
     ws.placeImageXY(columnImage, this.width * tileSize / 2, this.height * tileSize / 2);
-    GamePiece source = this.board.get(this.powerCol).get(this.powerRow);
-    if (this.hasPath(source)) {
+    if (this.engine.isSolved()) {
       ws.placeImageXY(new TextImage("You Win, Good Job!", 
           Math.round((this.width * this.height) / 2), Color.WHITE), 
           Math.round((tileSize * this.width) / 2), 
@@ -259,72 +183,106 @@ class LightEmAll extends World {
     return ws;
   }
 
+  //makes the scene to display the tiles inside the viewport,
+  //placing each visible tile's image directly in the scene
+  //EFFECT: sets rendered
+  WorldScene makeViewportScene() {
+    Viewport view = this.viewport;
+    int tileSize = view.tileSize;
+    this.rendered = view.visibleRows() * view.visibleCols();
+    WorldScene ws = new WorldScene(view.windowWidth, view.windowHeight);
+    this.sprites.resize(tileSize, view.wireWidth());
+    for (int c = 0; c < view.visibleCols(); c++) {
+      for (int r = 0; r < view.visibleRows(); r++) {
+        int index = this.engine.board.index(view.row + r, view.col + c);
+        ws.placeImageXY(this.sprites.sprite(this.engine.board.get(index)), 
+            r * tileSize + tileSize / 2, c * tileSize + tileSize / 2);
+      }
+    }
+    if (this.engine.isSolved()) {
+      ws.placeImageXY(new TextImage("You Win, Good Job!", 
+          Math.max(13, Math.min(view.windowWidth, view.windowHeight) / 10), Color.WHITE), 
+          view.windowWidth / 2, view.windowHeight / 2);
+    }
+    return ws;
+  }
+
 
   //Allows right and left button clicks
   //EFFECT: handles all the mouse clicks
+  //        power is updated incrementally around the rotated tile
+  //        the clicked tile is found by dividing by the tile size
   public void onMouseClicked(Posn pos, String buttonName) {
-    GamePiece stationPiece = this.board.get(this.powerCol).get(this.powerRow);
-    if (!this.hasPath(stationPiece)) {
-      for (int c = 0; c < this.height; c++) {
-        for (int r = 0; r < this.width; r++) {
-          if (pos.x > 30 * r
-              && pos.x < (30 * r) + 30
-              && pos.y > 30 * c
-              && pos.y < (30 * c) + 30) {
-            GamePiece current = this.board.get(c).get(r);
-            if (buttonName.equals("LeftButton")) {
-              current.rotate(1);
-            }
-          }
-        }
-      }
-      this.hasPath(this.board.get(this.powerCol).get(this.powerRow));
+    int before = this.beginInput();
+    int index = -1;
+    if (this.viewport != null) {
+      index = this.viewport.tileAt(this.engine.board, pos.x, pos.y);
+    } else if (pos.x > 0 && pos.y > 0 
+        && pos.x < 30 * this.width && pos.y < 30 * this.height
+        && pos.x % 30 != 0 && pos.y % 30 != 0) {
+      // clicks exactly on the lines between tiles do not rotate anything
+      index = this.engine.board.index(pos.x / 30, pos.y / 30);
+    }
+    if (index >= 0 && buttonName.equals("LeftButton") && !this.engine.isSolved()) {
+      this.rotateTile(index);
     }
+    this.endInput(before);
   }
 
 
   //Allows right and left button clicks
   //EFFECT: handles all the mouse clicks
+  //        w, a, s and d scroll the viewport, and + and - zoom it
+  //        the arrow keys move the station through the engine
+  //        z and y undo and redo moves if there is a history
   public void onKeyEvent(String key) {
-    GamePiece currentCell = this.board.get(this.powerCol).get(this.powerRow);
-    if (!this.hasPath(currentCell)) {
-      if (key.equals("left")) {
-        if (this.powerRow > 0) {
-          GamePiece left = this.board.get(this.powerCol).get(this.powerRow - 1);
-          if (currentCell.hasAnyConnection(left, key)) {
-            this.powerRow -= 1;
-            currentCell.moveStation(left, this.powerRow, this.powerCol);
-          }
-        }
-      }
-      if (key.equals("right")) {
-        if (this.powerRow < this.width - 1) {
-          GamePiece right = this.board.get(this.powerCol).get(this.powerRow + 1);
-          if (currentCell.hasAnyConnection(right, key)) {
-            this.powerRow += 1;
-            currentCell.moveStation(right, this.powerRow, this.powerCol);
-          }
-        }
-      }
-      if (key.equals("up")) {
-        if (this.powerCol > 0) {
-          GamePiece above = this.board.get(this.powerCol - 1).get(this.powerRow);
-          if (currentCell.hasAnyConnection(above, key)) {
-            this.powerCol -= 1;
-            currentCell.moveStation(above, this.powerRow, this.powerCol);
-          }
-        }
+    int before = this.beginInput();
+    this.applyInput();
+    if (this.viewport != null) {
+      int step = this.viewport.scrollStep();
+      if (key.equals("w")) {
+        this.viewport.scroll(0, -step);
+      } else if (key.equals("a")) {
+        this.viewport.scroll(-step, 0);
+      } else if (key.equals("s")) {
+        this.viewport.scroll(0, step);
+      } else if (key.equals("d")) {
+        this.viewport.scroll(step, 0);
+      } else if (key.equals("+") || key.equals("=")) {
+        this.viewport.zoom(1);
+      } else if (key.equals("-")) {
+        this.viewport.zoom(-1);
       }
-      if (key.equals("down")) {
-        if (this.powerCol < this.height - 1) {
-          GamePiece below = this.board.get(this.powerCol + 1).get(this.powerRow);
-          if (currentCell.hasAnyConnection(below, key)) {
-            this.powerCol += 1;
-            currentCell.moveStation(below, this.powerRow, this.powerCol);
-          }
-        }
+    }
+    if (this.history != null) {
+      if (key.equals("z")) {
+        this.history.undo();
+      } else if (key.equals("y")) {
+        this.history.redo();
+      } else {
+        this.history.play(PuzzleEngine.stationMove(PackedBoard.direction(key)));
       }
-      this.hasPath(currentCell);
+    } else if (!this.engine.isSolved()) {
+      this.engine.moveStation(PackedBoard.direction(key));
+    }
+    this.endInput(before);
+  }
+
+  //starts timing an input event if there are metrics, and returns the number
+  //of tiles powered before it
+  //EFFECT: begins a call in the metrics
+  int beginInput() {
+    if (this.metrics != null) {
+      this.metrics.begin();
+    }
+    return this.engine.power.reached;
+  }
+
+  //ends timing an input event, counting the tiles it switched on or off
+  //EFFECT: ends the call in the metrics
+  void endInput(int before) {
+    if (this.metrics != null) {
+      this.metrics.end(Metrics.INPUT, Math.abs(this.engine.power.reached - before));
     }
   }
 }
@@ -332,18 +290,13 @@ class LightEmAll extends World {
 //examples class for testing 
 class ExamplesLightEmAll {
   LightEmAll worldTester1;
-  LightEmAll worldTester2;
   LightEmAll game;
 
   //initialises the data for testing
   void initData() {
     this.worldTester1 = new LightEmAll(3, 3, new Random(2));
-    this.worldTester2 = new LightEmAll(2, 2, new Random(2));
     this.game = new LightEmAll(8, 8, new Random());
-    this.game.initBoard();
-    this.game.buildMST(this.game.board);
-    this.game.visualiseConnections();
-    this.game.randRotateBoard();
+    this.game.engine.generate();
   }
 
   //test for the big bang method
@@ -356,156 +309,53 @@ class ExamplesLightEmAll {
     world.bigBang(worldWidth, worldHeight, tickRate);
   }
 
-  //testing the initBoard method
-  void testInitBoard(Tester t) {
-    this.initData();
-    t.checkExpect(this.worldTester1.board, 
-        new ArrayList<ArrayList<GamePiece>>());
-    this.worldTester1.initBoard();
-    t.checkExpect(this.worldTester1.board, 
-        new ArrayList<ArrayList<GamePiece>>(
-            Arrays.asList(
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 0, false, false, false, false, true, false),
-                    new GamePiece(1, 0, false, false, false, false, false, false),
-                    new GamePiece(2, 0, false, false, false, false, false, false))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 1, false, false, false, false, false, false),
-                    new GamePiece(1, 1, false, false, false, false, false, false),
-                    new GamePiece(2, 1, false, false, false, false, false, false))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 2, false, false, false, false, false, false),
-                    new GamePiece(1, 2, false, false, false, false, false, false),
-                    new GamePiece(2, 2, false, false, false, false, false, false))))));
-  }
-
-  //testing the randRotateBoard method
-  void testRandRotateBoard(Tester t) {
-    this.initData();
-    this.worldTester1.initBoard();
-    this.worldTester1.buildMST(this.worldTester1.board);
-    this.worldTester1.visualiseConnections();
-    t.checkExpect(this.worldTester1.board, 
-        new ArrayList<ArrayList<GamePiece>>(
-            Arrays.asList(
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 0, false, true, false, true, true, false),
-                    new GamePiece(1, 0, true, true, false, false, false, false),
-                    new GamePiece(2, 0, true, false, false, true, false, false))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 1, false, false, true, true, false, false),
-                    new GamePiece(1, 1, false, true, false, true, false, false),
-                    new GamePiece(2, 1, true, false, true, true, false, false))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 2, false, false, true, false, false, false),
-                    new GamePiece(1, 2, false, false, true, false, false, false),
-                    new GamePiece(2, 2, false, false, true, false, false, false))))));
-    this.worldTester1.randRotateBoard();
-    t.checkExpect(this.worldTester1.board, 
-        new ArrayList<ArrayList<GamePiece>>(
-            Arrays.asList(
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 0, true, false, false, true, true, true),
-                    new GamePiece(1, 0, true, true, false, false, false, false),
-                    new GamePiece(2, 0, true, false, true, false, false, false))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 1, false, false, true, true, false, true),
-                    new GamePiece(1, 1, false, true, false, true, false, false),
-                    new GamePiece(2, 1, true, true, true, false, false, false))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 2, false, true, false, false, false, false),
-                    new GamePiece(1, 2, false, false, true, false, false, false),
-                    new GamePiece(2, 2, false, true, false, false, false, false))))));
-  }
-
-  //testing the hasPath method
-  void testHasPath(Tester t) {
-    this.initData();
-    this.worldTester1.initBoard();
-    this.worldTester1.buildMST(this.worldTester1.board);
-    this.worldTester1.visualiseConnections();
-    t.checkExpect(this.worldTester1.board, 
-        new ArrayList<ArrayList<GamePiece>>(
-            Arrays.asList(
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 0, false, true, false, true, true, false),
-                    new GamePiece(1, 0, true, true, false, false, false, false),
-                    new GamePiece(2, 0, true, false, false, true, false, false))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 1, false, false, true, true, false, false),
-                    new GamePiece(1, 1, false, true, false, true, false, false),
-                    new GamePiece(2, 1, true, false, true, true, false, false))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 2, false, false, true, false, false, false),
-                    new GamePiece(1, 2, false, false, true, false, false, false),
-                    new GamePiece(2, 2, false, false, true, false, false, false))))));
-    this.worldTester1.hasPath(this.worldTester1.board.get(0).get(0));
-    t.checkExpect(this.worldTester1.board, 
-        new ArrayList<ArrayList<GamePiece>>(
-            Arrays.asList(
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 0, false, true, false, true, true, true),
-                    new GamePiece(1, 0, true, true, false, false, false, true),
-                    new GamePiece(2, 0, true, false, false, true, false, true))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 1, false, false, true, true, false, true),
-                    new GamePiece(1, 1, false, true, false, true, false, true),
-                    new GamePiece(2, 1, true, false, true, true, false, true))),
-                new ArrayList<GamePiece>(Arrays.asList(
-                    new GamePiece(0, 2, false, false, true, false, false, true),
-                    new GamePiece(1, 2, false, false, true, false, false, true),
-                    new GamePiece(2, 2, false, false, true, false, false, true))))));
-    t.checkExpect(this.worldTester1.hasPath(this.worldTester1.board.get(1).get(1)), true);
-    t.checkExpect(this.worldTester1.hasPath(this.worldTester1.board.get(0).get(0)), true);
-    this.worldTester1.randRotateBoard();
-    t.checkExpect(this.worldTester1.hasPath(this.worldTester1.board.get(1).get(1)), false);
-  }
-
   //testing the onMouseClicked method
   void testOnMouseClicked(Tester t) {
     this.initData();
-    this.worldTester1.initBoard();
-    this.worldTester1.buildMST(this.worldTester1.board);
-    this.worldTester1.visualiseConnections();
-    this.worldTester1.hasPath(this.worldTester1.board.get(0).get(0));
+    this.worldTester1.engine.initBoard();
+    this.worldTester1.engine.buildMST(this.worldTester1.engine.board);
+    this.worldTester1.engine.visualiseConnections();
+    this.worldTester1.engine.hasPath(0);
     //win
-    t.checkExpect(this.worldTester1.board.get(0).get(0), 
-        new GamePiece(0, 0, false, true, false, true, true, true));
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(0, 0), 
+        new GamePiece(0, 0, false, true, false, false, true, true));
     this.worldTester1.onMouseClicked(new Posn(1, 1), "LeftButton");
-    t.checkExpect(this.worldTester1.board.get(0).get(0), 
-        new GamePiece(0, 0, false, true, false, true, true, true));
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(0, 0), 
+        new GamePiece(0, 0, false, true, false, false, true, true));
 
     this.initData();
-    this.worldTester1.initBoard();
-    this.worldTester1.buildMST(this.worldTester1.board);
-    this.worldTester1.visualiseConnections();
-    this.worldTester1.randRotateBoard();
+    this.worldTester1.engine.generate();
     //in progress
-    t.checkExpect(this.worldTester1.board.get(0).get(1), 
-        new GamePiece(1, 0, true, true, false, false, false, false));
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(1, 0), 
+        new GamePiece(1, 0, true, false, false, true, false, false));
     this.worldTester1.onMouseClicked(new Posn(31, 1), "LeftButton");
-    t.checkExpect(this.worldTester1.board.get(0).get(1), 
-        new GamePiece(1, 0, false, false, true, true, false, false));
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(1, 0), 
+        new GamePiece(1, 0, true, false, true, false, false, false));
     this.worldTester1.onMouseClicked(new Posn(31, 1), "LeftButton");
-    t.checkExpect(this.worldTester1.board.get(0).get(1), 
-        new GamePiece(1, 0, true, true, false, false, false, false));
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(1, 0), 
+        new GamePiece(1, 0, false, true, true, false, false, false));
+    this.worldTester1.onMouseClicked(new Posn(31, 1), "LeftButton");
+    this.worldTester1.onMouseClicked(new Posn(31, 1), "LeftButton");
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(1, 0), 
+        new GamePiece(1, 0, true, false, false, true, false, false));
     this.worldTester1.onMouseClicked(new Posn(1, 1), "LeftButton");
     this.worldTester1.onMouseClicked(new Posn(1, 1), "LeftButton");
-    t.checkExpect(this.worldTester1.board.get(0).get(1), 
-        new GamePiece(1, 0, true, true, false, false, false, true));
+    this.worldTester1.onMouseClicked(new Posn(1, 1), "LeftButton");
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(1, 0), 
+        new GamePiece(1, 0, true, false, false, true, false, true));
     //right button
     this.worldTester1.onMouseClicked(new Posn(31, 1), "RightButton");
-    t.checkExpect(this.worldTester1.board.get(0).get(1), 
-        new GamePiece(1, 0, true, true, false, false, false, true));
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(1, 0), 
+        new GamePiece(1, 0, true, false, false, true, false, true));
   }
 
   //testing the makeScene method
   void testMakeScene(Tester t) {
     this.initData();
-    this.worldTester1.initBoard();
-    this.worldTester1.buildMST(this.worldTester1.board);
-    this.worldTester1.visualiseConnections();
-    this.worldTester1.hasPath(this.worldTester1.board.get(0).get(0));
+    this.worldTester1.engine.initBoard();
+    this.worldTester1.engine.buildMST(this.worldTester1.engine.board);
+    this.worldTester1.engine.visualiseConnections();
+    this.worldTester1.engine.hasPath(0);
     WorldScene scene1 = this.worldTester1.makeScene(); 
     //Win condition
     WorldScene expectedScene1 = new WorldScene(3 * 30, 3 * 30);
@@ -513,7 +363,7 @@ class ExamplesLightEmAll {
     for (int c = 0; c < 3; c++) {
       WorldImage rowImage1 = new EmptyImage();
       for (int r = 0; r < 3; r++) {
-        GamePiece current1 = this.worldTester1.board.get(c).get(r);
+        GamePiece current1 = this.worldTester1.engine.board.pieceAt(r, c);
         WorldImage expectedImage1 = 
             current1.tileImage(30, 3, current1.wireColor(), (r == 0 && c == 0));
         rowImage1 = new BesideImage(rowImage1, expectedImage1);
@@ -525,10 +375,7 @@ class ExamplesLightEmAll {
     t.checkExpect(scene1, expectedScene1);
 
     this.initData();
-    this.worldTester1.initBoard();
-    this.worldTester1.buildMST(this.worldTester1.board);
-    this.worldTester1.visualiseConnections();
-    this.worldTester1.randRotateBoard();
+    this.worldTester1.engine.generate();
     WorldScene scene = this.worldTester1.makeScene();   
     //Still running
     WorldScene expectedScene = new WorldScene(3 * 30, 3 * 30);
@@ -536,7 +383,7 @@ class ExamplesLightEmAll {
     for (int c = 0; c < 3; c++) {
       WorldImage rowImage = new EmptyImage();
       for (int r = 0; r < 3; r++) {
-        GamePiece current = this.worldTester1.board.get(c).get(r);
+        GamePiece current = this.worldTester1.engine.board.pieceAt(r, c);
         WorldImage expectedImage = 
             current.tileImage(30, 3, current.wireColor(), (r == 0 && c == 0));
         rowImage = new BesideImage(rowImage, expectedImage);
@@ -548,112 +395,214 @@ class ExamplesLightEmAll {
 
   }
 
+  //testing the makeScene method with a raster
+  void testMakeSceneRaster(Tester t) {
+    this.initData();
+    this.worldTester1.engine.generate();
+    this.worldTester1.useRaster();
+    WorldScene scene = this.worldTester1.makeScene();
+    WorldScene expectedScene = new WorldScene(3 * 30, 3 * 30);
+    expectedScene.placeImageXY(this.worldTester1.raster.frame, 45, 45);
+    t.checkExpect(scene, expectedScene);
+    // one click only redraws the tiles it changed
+    this.worldTester1.onMouseClicked(new Posn(31, 1), "LeftButton");
+    t.checkExpect(this.worldTester1.raster.redraw(), 1);
+    t.checkExpect(this.worldTester1.raster.redraw(), 0);
+    t.checkExpect(this.worldTester1.raster.frame.getPixel(45, 5), 
+        GamePiece.UNPOWERED_COLOR);
+  }
+
+  //testing the viewport through useViewport, makeViewportScene,
+  //onMouseClicked and onKeyEvent
+  void testViewport(Tester t) {
+    this.initData();
+    this.game.useViewport(60, 60);
+    WorldScene scene = this.game.makeScene();
+    WorldScene expectedScene = new WorldScene(60, 60);
+    PackedBoard board = this.game.engine.board;
+    for (int c = 0; c < 2; c++) {
+      for (int r = 0; r < 2; r++) {
+        expectedScene.placeImageXY(
+            this.game.sprites.sprite(board.get(board.index(r, c))), 
+            r * 30 + 15, c * 30 + 15);
+      }
+    }
+    t.checkExpect(scene, expectedScene);
+    this.game.onKeyEvent("d");
+    this.game.onKeyEvent("s");
+    t.checkExpect(this.game.viewport.row, 1);
+    t.checkExpect(this.game.viewport.col, 1);
+    int before = this.game.engine.board.wires(this.game.engine.board.index(2, 1));
+    this.game.onMouseClicked(new Posn(31, 1), "LeftButton");
+    t.checkExpect(this.game.engine.board.wires(this.game.engine.board.index(2, 1)), 
+        PackedBoard.rotateWires(before, 1));
+    this.game.onKeyEvent("-");
+    t.checkExpect(this.game.viewport.tileSize, 24);
+    this.game.onKeyEvent("+");
+    t.checkExpect(this.game.viewport.tileSize, 30);
+  }
+
+  //testing clicks between tiles, which do not rotate anything
+  void testOnMouseClickedLines(Tester t) {
+    this.initData();
+    this.worldTester1.engine.generate();
+    byte[] before = this.worldTester1.engine.board.cells.clone();
+    this.worldTester1.onMouseClicked(new Posn(30, 5), "LeftButton");
+    this.worldTester1.onMouseClicked(new Posn(5, 60), "LeftButton");
+    this.worldTester1.onMouseClicked(new Posn(95, 5), "LeftButton");
+    this.worldTester1.onMouseClicked(new Posn(0, 5), "LeftButton");
+    t.checkExpect(this.worldTester1.engine.board.cells, before);
+    this.worldTester1.onMouseClicked(new Posn(89, 89), "LeftButton");
+    t.checkExpect(this.worldTester1.engine.board.wires(8), 
+        PackedBoard.rotateWires(before[8] & PackedBoard.WIRES, 1));
+  }
+
+  //testing useInputQueue, rotateTile, applyInput and onTick
+  void testInputQueue(Tester t) {
+    this.initData();
+    this.worldTester1.engine.generate();
+    this.worldTester1.useInputQueue();
+    // the same clicks as testOnMouseClicked, applied in one batch
+    for (int i = 0; i < 4; i++) {
+      this.worldTester1.onMouseClicked(new Posn(31, 1), "LeftButton");
+    }
+    for (int i = 0; i < 3; i++) {
+      this.worldTester1.onMouseClicked(new Posn(1, 1), "LeftButton");
+    }
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(0, 0), 
+        new GamePiece(0, 0, false, false, false, true, true, true));
+    t.checkExpect(this.worldTester1.input.count, 2);
+    this.worldTester1.onTick();
+    t.checkExpect(this.worldTester1.input.count, 0);
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(0, 0), 
+        new GamePiece(0, 0, false, true, false, false, true, true));
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(1, 0), 
+        new GamePiece(1, 0, true, false, false, true, false, true));
+    this.worldTester1.rotateTile(2);
+    this.worldTester1.applyInput();
+    t.checkExpect(this.worldTester1.engine.board.pieceAt(2, 0), 
+        new GamePiece(2, 0, false, true, false, false, false, false));
+  }
+
   // test for onKeyEvent
   void testOnKeyEvent(Tester t) {
     initData();
-    this.worldTester1.initBoard();
-    this.worldTester1.buildMST(this.worldTester1.board);
-    this.worldTester1.visualiseConnections();
-    this.worldTester1.board.get(2).get(2).rotate(1);
+    this.worldTester1.engine.initBoard();
+    this.worldTester1.engine.buildMST(this.worldTester1.engine.board);
+    this.worldTester1.engine.visualiseConnections();
+    this.worldTester1.engine.board.rotate(this.worldTester1.engine.board.index(2, 2), 1);
     this.worldTester1.onKeyEvent("left");
-    t.checkExpect(this.worldTester1.powerRow, 0);
+    t.checkExpect(this.worldTester1.engine.powerRow, 0);
     this.worldTester1.onKeyEvent("right");
-    t.checkExpect(this.worldTester1.powerRow, 1);
-    this.worldTester1.onKeyEvent("left");
-    t.checkExpect(this.worldTester1.powerRow, 0);
-    this.worldTester1.onKeyEvent("up");
-    t.checkExpect(this.worldTester1.powerCol, 0);
+    t.checkExpect(this.worldTester1.engine.powerRow, 1);
     this.worldTester1.onKeyEvent("down");
-    t.checkExpect(this.worldTester1.powerCol, 1);
+    t.checkExpect(this.worldTester1.engine.powerCol, 1);
     this.worldTester1.onKeyEvent("up");
-    t.checkExpect(this.worldTester1.powerCol, 0);
+    t.checkExpect(this.worldTester1.engine.powerCol, 0);
+    this.worldTester1.onKeyEvent("left");
+    t.checkExpect(this.worldTester1.engine.powerRow, 0);
+    this.worldTester1.onKeyEvent("up");
+    t.checkExpect(this.worldTester1.engine.powerCol, 0);
     this.worldTester1.onKeyEvent("a");
-    t.checkExpect(this.worldTester1.powerRow, 0);
-    t.checkExpect(this.worldTester1.powerCol, 0); 
-    this.worldTester1.board.get(2).get(2).rotate(3);
+    t.checkExpect(this.worldTester1.engine.powerRow, 0);
+    t.checkExpect(this.worldTester1.engine.powerCol, 0); 
+    this.worldTester1.engine.board.rotate(this.worldTester1.engine.board.index(2, 2), 3);
     this.worldTester1.onKeyEvent("right");
-    t.checkExpect(this.worldTester1.powerRow, 0);
+    t.checkExpect(this.worldTester1.engine.powerRow, 0);
   }
 
-  //test for the method createMSTWorklist
-  void testCreateMSTWorkList(Tester t) {
-    initData();
-    this.worldTester2.initBoard();
-    GamePiece gp1 = this.worldTester2.board.get(0).get(0);
-    GamePiece gp2 = this.worldTester2.board.get(0).get(1);
-    GamePiece gp3 = this.worldTester2.board.get(1).get(0);
-    GamePiece gp4 = this.worldTester2.board.get(1).get(1);
-    t.checkExpect(this.worldTester2.mst, new ArrayList<Edge>());
-    t.checkExpect(this.worldTester2.createMSTWorklist(this.worldTester2.board), 
-        new ArrayList<Edge>(Arrays.asList(
-            new Edge(gp3, gp4, 0), 
-            new Edge(gp4, gp3, 6), 
-            new Edge(gp1, gp2, 8), 
-            new Edge(gp2, gp4, 17), 
-            new Edge(gp4, gp2, 19), 
-            new Edge(gp1, gp3, 22), 
-            new Edge(gp3, gp1, 39), 
-            new Edge(gp2, gp1, 40))));
-  }
-  
-  //test for the method find
-  void testFind(Tester t) {
+  //testing useHistory, and undoing and redoing with keys
+  void testHistory(Tester t) {
     this.initData();
-    this.worldTester1.initBoard();
-    HashMap<GamePiece, GamePiece> representatives = new HashMap<GamePiece, GamePiece>();   
-    for (GamePiece gp : this.worldTester1.nodes) {
-      representatives.put(gp, gp);
-    }   
-    
-    GamePiece node1 = this.worldTester1.board.get(0).get(0);
-    t.checkExpect(this.worldTester1.find(representatives, node1), node1);  
-    GamePiece node2 = this.worldTester1.board.get(1).get(1);
-    representatives.put(node2, node1);
-    t.checkExpect(this.worldTester1.find(representatives, node2), node1);
+    this.game.useHistory();
+    this.game.useInputQueue();
+    byte[] start = this.game.engine.board.cells.clone();
+    this.game.onMouseClicked(new Posn(31, 1), "LeftButton");
+    this.game.onMouseClicked(new Posn(61, 1), "LeftButton");
+    // clicks are played at once and logged, not queued
+    t.checkExpect(this.game.input.count, 0);
+    t.checkExpect(this.game.history.size, 2);
+    this.game.onKeyEvent("z");
+    this.game.onKeyEvent("z");
+    t.checkExpect(this.game.engine.board.cells, start);
+    this.game.onKeyEvent("y");
+    t.checkExpect(this.game.history.cursor, 1);
+    // a key that is not a move keeps the moves that can be redone
+    this.game.onKeyEvent("a");
+    t.checkExpect(this.game.history.size, 2);
+    this.game.onMouseClicked(new Posn(1, 1), "LeftButton");
+    t.checkExpect(this.game.history.size, 2);
+    t.checkExpect(this.game.history.moves[1], PuzzleEngine.rotateMove(0));
   }
-  
-  //test for the method buildMST
-  void testBuildMST(Tester t) {
+
+  //testing useProgressivePower and onTick spreading power
+  void testProgressivePower(Tester t) {
     this.initData();
-    this.worldTester2.initBoard();
-    GamePiece gp1 = this.worldTester2.board.get(0).get(0);
-    GamePiece gp2 = this.worldTester2.board.get(0).get(1);
-    GamePiece gp3 = this.worldTester2.board.get(1).get(0);
-    GamePiece gp4 = this.worldTester2.board.get(1).get(1);
-    t.checkExpect(this.worldTester2.mst.size(), 0);
-    t.checkExpect(this.worldTester2.mst, 
-        new ArrayList<Edge>());
-    this.worldTester2.buildMST(this.worldTester2.board);
-    t.checkExpect(this.worldTester2.mst.size(), 3);
-    t.checkExpect(this.worldTester2.mst, 
-        new ArrayList<Edge>(
-            Arrays.asList(
-                new Edge(gp3, gp4, 0),
-                new Edge(gp1, gp2, 8), 
-                new Edge(gp2, gp4, 17))));
+    this.game.useProgressivePower(5);
+    t.checkExpect(this.game.engine.power.budget, 5);
+    int reached = this.game.engine.power.reached;
+    this.game.onMouseClicked(new Posn(31, 31), "LeftButton");
+    this.game.onMouseClicked(new Posn(31, 31), "LeftButton");
+    this.game.onMouseClicked(new Posn(31, 31), "LeftButton");
+    this.game.onMouseClicked(new Posn(31, 31), "LeftButton");
+    t.checkExpect(this.game.engine.power.settled, false);
+    int ticks = 0;
+    while (!this.game.engine.power.settled) {
+      this.game.onTick();
+      ticks += 1;
+    }
+    // every tick did at most five tiles of work
+    t.checkExpect(ticks >= 2 * reached / 5, true);
+    t.checkExpect(this.game.engine.power.reached, reached);
+  }
+
+  //testing useParallelPower deciding the win on a large board
+  void testParallelPower(Tester t) {
+    LightEmAll large = new LightEmAll(400, 200, new Random(3));
+    ForkJoinPool pool = new ForkJoinPool(2);
+    large.useParallelPower(pool);
+    t.checkExpect(large.engine.power.pool, pool);
+    large.engine.initBoard();
+    large.engine.buildMST(large.engine.board);
+    large.engine.visualiseConnections();
+    t.checkExpect(large.engine.isSolved(), true);
+    t.checkExpect(large.engine.board.has(79999, PackedBoard.POWERED), true);
+    large.engine.board.rotate(200, 1);
+    t.checkExpect(large.engine.isSolved(), false);
+    pool.shutdown();
   }
-  
-  //test for the method visualiseConnections
-  void testVisualiseConnections(Tester t) {
+
+  //test for useMetrics, and the timing of scenes, input and ticks
+  void testMetrics(Tester t) {
     this.initData();
-    this.worldTester2.initBoard();
-    this.worldTester2.buildMST(this.worldTester2.board);
-    GamePiece gp1 = this.worldTester2.board.get(0).get(0);
-    GamePiece gp2 = this.worldTester2.board.get(0).get(1);
-    GamePiece gp3 = this.worldTester2.board.get(1).get(0);
-    GamePiece gp4 = this.worldTester2.board.get(1).get(1);
-    t.checkExpect(gp1, new GamePiece(0, 0, false, false, false, false, true, false));
-    t.checkExpect(gp2, new GamePiece(1, 0, false, false, false, false, false, false));
-    t.checkExpect(gp3, new GamePiece(0, 1, false, false, false, false, false, false));
-    t.checkExpect(gp4, new GamePiece(1, 1, false, false, false, false, false, false));
-    this.worldTester2.visualiseConnections();
-    gp1 = this.worldTester2.board.get(0).get(0);
-    gp2 = this.worldTester2.board.get(0).get(1);
-    gp3 = this.worldTester2.board.get(1).get(0);
-    gp4 = this.worldTester2.board.get(1).get(1);
-    t.checkExpect(gp1, new GamePiece(0, 0, false, true, false, false, true, false));
-    t.checkExpect(gp2, new GamePiece(1, 0, true, false, false, true, false, false));
-    t.checkExpect(gp3, new GamePiece(0, 1, false, true, false, false, false, false));
-    t.checkExpect(gp4, new GamePiece(1, 1, true, false, true, false, false, false));
+    Metrics metrics = new Metrics();
+    this.game.useMetrics(metrics);
+    t.checkExpect(this.game.engine.metrics, metrics);
+    this.game.makeScene();
+    t.checkExpect(metrics.calls[Metrics.SCENE], 1L);
+    t.checkExpect(metrics.tiles[Metrics.SCENE], 64L);
+    // the raster draws only the tiles that changed, here none
+    this.game.useRaster();
+    this.game.makeScene();
+    t.checkExpect(metrics.calls[Metrics.SCENE], 2L);
+    t.checkExpect(metrics.tiles[Metrics.SCENE], 64L);
+    int reached = this.game.engine.power.reached;
+    this.game.onMouseClicked(new Posn(15, 15), "LeftButton");
+    this.game.onKeyEvent("q");
+    t.checkExpect(metrics.calls[Metrics.INPUT], 2L);
+    t.checkExpect(metrics.tiles[Metrics.INPUT],
+        (long) Math.abs(this.game.engine.power.reached - reached));
+    t.checkExpect(metrics.depth, 0);
+    Path path;
+    try {
+      path = Files.createTempFile("metrics", ".txt");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    path.toFile().deleteOnExit();
+    metrics.dumpEvery(path, 0);
+    this.game.onTick();
+    t.checkExpect(metrics.calls[Metrics.INPUT], 0L);
+    t.checkExpect(path.toFile().length() > 0, true);
   }
-}
\ No newline at end of file
+}
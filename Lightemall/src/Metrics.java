@@ -0,0 +1,368 @@
+import tester.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import jdk.jfr.Recording;
+
+//represents counters and histograms of the time spent in the hot paths of a
+//game: generating boards, searching power, building scenes and handling
+//input; each timed call also records the tiles it visited or drew and the
+//bytes it allocated, and is committed as a flight recorder event when one
+//is being recorded. Games without a registry skip all of this behind a
+//null check
+class Metrics {
+  // the probes, indexing every array below
+  static final int GENERATE = 0;
+  static final int POWER = 1;
+  static final int SCENE = 2;
+  static final int INPUT = 3;
+  static final String[] NAMES = {"generate", "power", "scene", "input"};
+  // durations are counted in buckets by their highest set bit,
+  // so bucket b holds calls of less than 2^b nanoseconds
+  static final int BUCKETS = 64;
+  // the deepest probes can be nested, as when a click searches power
+  static final int DEPTH = 8;
+  // the allocation counter of threads, or null if the virtual machine has none
+  static final com.sun.management.ThreadMXBean THREADS =
+      ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+      ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+
+  // per probe: the calls, their total and longest nanoseconds, the tiles
+  // and bytes they add up to, and the calls in each bucket of time
+  long[] calls;
+  long[] nanos;
+  long[] maxNanos;
+  long[] tiles;
+  long[] bytes;
+  long[][] histogram;
+  // the clock, allocation counter and event of each probe started
+  // and not yet ended, innermost last
+  long[] started;
+  long[] allocated;
+  ProbeEvent[] events;
+  int depth;
+  // the file snapshots are appended to by tick, or null, how often,
+  // and when the last one was
+  Path path;
+  long interval;
+  long lastDump;
+
+  Metrics() {
+    this.calls = new long[NAMES.length];
+    this.nanos = new long[NAMES.length];
+    this.maxNanos = new long[NAMES.length];
+    this.tiles = new long[NAMES.length];
+    this.bytes = new long[NAMES.length];
+    this.histogram = new long[NAMES.length][BUCKETS];
+    this.started = new long[DEPTH];
+    this.allocated = new long[DEPTH];
+    this.events = new ProbeEvent[DEPTH];
+    this.depth = 0;
+    this.path = null;
+    this.interval = 0;
+    this.lastDump = 0;
+  }
+
+  //returns the bytes allocated so far by the current thread, or 0 if the
+  //virtual machine cannot say
+  static long allocatedBytes() {
+    if (THREADS == null) {
+      return 0;
+    }
+    return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  //returns the bucket a call of the given nanoseconds is counted in
+  static int bucket(long nanos) {
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+  }
+
+  //starts timing a call, inside any that are already being timed
+  //EFFECT: pushes the clock, the allocation counter and, if the flight
+  //        recorder wants them, a started event
+  void begin() {
+    if (this.depth == DEPTH) {
+      throw new IllegalStateException("probes nested more than " + DEPTH + " deep");
+    }
+    ProbeEvent event = new ProbeEvent();
+    if (event.isEnabled()) {
+      event.begin();
+      this.events[this.depth] = event;
+    } else {
+      this.events[this.depth] = null;
+    }
+    this.allocated[this.depth] = Metrics.allocatedBytes();
+    this.started[this.depth] = System.nanoTime();
+    this.depth += 1;
+  }
+
+  //ends timing the innermost call, counting it against the probe with the
+  //tiles it visited or drew
+  //EFFECT: pops the call, updates the probe's counters and histogram,
+  //        and commits its event
+  void end(int probe, long tileCount) {
+    long took = System.nanoTime() - this.started[this.depth - 1];
+    long bytesUsed = Metrics.allocatedBytes() - this.allocated[this.depth - 1];
+    this.depth -= 1;
+    this.calls[probe] += 1;
+    this.nanos[probe] += took;
+    this.maxNanos[probe] = Math.max(this.maxNanos[probe], took);
+    this.tiles[probe] += tileCount;
+    this.bytes[probe] += bytesUsed;
+    this.histogram[probe][Metrics.bucket(took)] += 1;
+    ProbeEvent event = this.events[this.depth];
+    if (event != null) {
+      this.events[this.depth] = null;
+      event.end();
+      if (event.shouldCommit()) {
+        event.operation = NAMES[probe];
+        event.tiles = tileCount;
+        event.allocated = bytesUsed;
+        event.commit();
+      }
+    }
+  }
+
+  //returns the least time in nanoseconds that the given fraction of the
+  //probe's calls took no longer than, to the nearest power of two above,
+  //or 0 if there were no calls
+  long percentile(int probe, double fraction) {
+    long wanted = (long) Math.ceil(fraction * this.calls[probe]);
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += this.histogram[probe][b];
+      if (seen >= Math.max(wanted, 1)) {
+        return 1L << b;
+      }
+    }
+    return 0;
+  }
+
+  //returns the counters of every probe as a table, one row per probe
+  String snapshot() {
+    StringBuilder table = new StringBuilder(String.format(
+        "%-9s %9s %12s %12s %12s %12s %14s %14s%n",
+        "probe", "calls", "mean ns", "p50 ns", "p99 ns", "max ns", "tiles", "bytes"));
+    for (int p = 0; p < NAMES.length; p++) {
+      table.append(String.format("%-9s %9d %12d %12d %12d %12d %14d %14d%n", NAMES[p],
+          this.calls[p], this.calls[p] == 0 ? 0 : this.nanos[p] / this.calls[p],
+          this.percentile(p, 0.5), this.percentile(p, 0.99), this.maxNanos[p],
+          this.tiles[p], this.bytes[p]));
+    }
+    return table.toString();
+  }
+
+  //EFFECT: appends a snapshot to the file, under a line giving the time
+  void dump(Path file) {
+    String text = "# " + System.currentTimeMillis() + System.lineSeparator() + this.snapshot();
+    try {
+      Files.write(file, text.getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //EFFECT: sets every counter back to zero
+  void reset() {
+    for (int p = 0; p < NAMES.length; p++) {
+      this.calls[p] = 0;
+      this.nanos[p] = 0;
+      this.maxNanos[p] = 0;
+      this.tiles[p] = 0;
+      this.bytes[p] = 0;
+      for (int b = 0; b < BUCKETS; b++) {
+        this.histogram[p][b] = 0;
+      }
+    }
+  }
+
+  //makes tick append a snapshot to the file every interval nanoseconds,
+  //each covering only the calls since the one before, so a spike stands
+  //out in the interval it happened in
+  //EFFECT: sets path and interval, and starts the first interval now
+  void dumpEvery(Path file, long intervalNanos) {
+    this.path = file;
+    this.interval = intervalNanos;
+    this.lastDump = System.nanoTime();
+  }
+
+  //appends a snapshot and starts a new interval if one is due at the given
+  //time, returning whether it did
+  //EFFECT: see dump and reset
+  boolean tick(long now) {
+    if (this.path == null || now - this.lastDump < this.interval) {
+      return false;
+    }
+    this.dump(this.path);
+    this.reset();
+    this.lastDump = now;
+    return true;
+  }
+}
+
+//represents one timed call of a probe, as a flight recorder event
+@Name("lightemall.Probe")
+@Label("LightEmAll Probe")
+@Category("LightEmAll")
+class ProbeEvent extends jdk.jfr.Event {
+  @Label("Operation")
+  String operation;
+  @Label("Tiles")
+  long tiles;
+  @Label("Allocated")
+  @DataAmount
+  long allocated;
+}
+
+//examples class for testing
+class ExamplesMetrics {
+  Metrics metrics;
+  Path path;
+
+  //initialises an empty registry and a file to dump it to
+  void initData() {
+    this.metrics = new Metrics();
+    try {
+      this.path = Files.createTempFile("metrics", ".txt");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.path.toFile().deleteOnExit();
+  }
+
+  //test for bucket
+  void testBucket(Tester t) {
+    t.checkExpect(Metrics.bucket(0), 0);
+    t.checkExpect(Metrics.bucket(1), 1);
+    t.checkExpect(Metrics.bucket(1000), 10);
+    t.checkExpect(Metrics.bucket(Long.MAX_VALUE), 63);
+  }
+
+  //test for begin and end
+  void testBeginEnd(Tester t) {
+    this.initData();
+    this.metrics.begin();
+    this.metrics.begin();
+    byte[] garbage = new byte[1 << 16];
+    this.metrics.end(Metrics.POWER, 12);
+    this.metrics.end(Metrics.INPUT, garbage.length);
+    t.checkExpect(this.metrics.depth, 0);
+    t.checkExpect(this.metrics.calls, new long[] {0, 1, 0, 1});
+    t.checkExpect(this.metrics.tiles, new long[] {0, 12, 0, 1 << 16});
+    // the outer call includes the inner one
+    t.checkExpect(this.metrics.nanos[Metrics.INPUT] >= this.metrics.nanos[Metrics.POWER], true);
+    t.checkExpect(this.metrics.bytes[Metrics.INPUT] >= 1 << 16, Metrics.THREADS != null);
+    t.checkExpect(this.metrics.maxNanos[Metrics.POWER], this.metrics.nanos[Metrics.POWER]);
+    for (int i = 0; i < Metrics.DEPTH; i++) {
+      this.metrics.begin();
+    }
+    String message = "";
+    try {
+      this.metrics.begin();
+    } catch (IllegalStateException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "probes nested more than 8 deep");
+  }
+
+  //test for ProbeEvent, committed by end while a recording is running
+  void testEvents(Tester t) {
+    this.initData();
+    List<RecordedEvent> recorded;
+    try (Recording recording = new Recording()) {
+      recording.enable(ProbeEvent.class);
+      recording.start();
+      PuzzleEngine engine = new PuzzleEngine(20, 20, new Random(1));
+      engine.metrics = this.metrics;
+      engine.generate();
+      recording.stop();
+      recording.dump(this.path);
+      recorded = RecordingFile.readAllEvents(this.path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    // generating searches power once, inside the generate probe
+    t.checkExpect(recorded.size(), 2);
+    t.checkExpect(recorded.get(0).getString("operation"), "power");
+    t.checkExpect(recorded.get(0).getLong("tiles"), this.metrics.tiles[Metrics.POWER]);
+    t.checkExpect(recorded.get(1).getString("operation"), "generate");
+    t.checkExpect(recorded.get(1).getLong("tiles"), 400L);
+  }
+
+  //test for percentile
+  void testPercentile(Tester t) {
+    this.initData();
+    t.checkExpect(this.metrics.percentile(Metrics.SCENE, 0.5), 0L);
+    this.metrics.calls[Metrics.SCENE] = 100;
+    this.metrics.histogram[Metrics.SCENE][10] = 90;
+    this.metrics.histogram[Metrics.SCENE][20] = 10;
+    t.checkExpect(this.metrics.percentile(Metrics.SCENE, 0.5), 1024L);
+    t.checkExpect(this.metrics.percentile(Metrics.SCENE, 0.9), 1024L);
+    t.checkExpect(this.metrics.percentile(Metrics.SCENE, 0.99), 1L << 20);
+  }
+
+  //test for snapshot
+  void testSnapshot(Tester t) {
+    this.initData();
+    this.metrics.calls[Metrics.SCENE] = 4;
+    this.metrics.nanos[Metrics.SCENE] = 4000;
+    this.metrics.maxNanos[Metrics.SCENE] = 1500;
+    this.metrics.tiles[Metrics.SCENE] = 64;
+    this.metrics.histogram[Metrics.SCENE][10] = 4;
+    String[] rows = this.metrics.snapshot().split(System.lineSeparator());
+    t.checkExpect(rows.length, 5);
+    t.checkExpect(rows[0].startsWith("probe"), true);
+    t.checkExpect(rows[3], String.format("%-9s %9d %12d %12d %12d %12d %14d %14d",
+        "scene", 4, 1000, 1024, 1024, 1500, 64, 0));
+  }
+
+  //test for dump and reset
+  void testDump(Tester t) {
+    this.initData();
+    this.metrics.calls[Metrics.GENERATE] = 3;
+    this.metrics.histogram[Metrics.GENERATE][5] = 3;
+    this.metrics.dump(this.path);
+    this.metrics.reset();
+    t.checkExpect(this.metrics.calls[Metrics.GENERATE], 0L);
+    t.checkExpect(this.metrics.histogram[Metrics.GENERATE][5], 0L);
+    this.metrics.dump(this.path);
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(this.path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    t.checkExpect(lines.size(), 12);
+    t.checkExpect(lines.get(0).startsWith("# "), true);
+    t.checkExpect(lines.get(2).startsWith("generate          3"), true);
+    t.checkExpect(lines.get(8).startsWith("generate          0"), true);
+  }
+
+  //test for dumpEvery and tick
+  void testTick(Tester t) {
+    this.initData();
+    t.checkExpect(this.metrics.tick(System.nanoTime()), false);
+    this.metrics.dumpEvery(this.path, 1000);
+    long start = this.metrics.lastDump;
+    this.metrics.calls[Metrics.INPUT] = 2;
+    t.checkExpect(this.metrics.tick(start + 999), false);
+    t.checkExpect(this.metrics.tick(start + 1000), true);
+    t.checkExpect(this.metrics.calls[Metrics.INPUT], 0L);
+    t.checkExpect(this.metrics.lastDump, start + 1000);
+    t.checkExpect(this.metrics.tick(start + 1500), false);
+    t.checkExpect(this.path.toFile().length() > 0, true);
+  }
+}
@@ -0,0 +1,318 @@
+import tester.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+//represents the history of a game as the engine's move codes, one int per
+//move, with a snapshot of the board every SNAPSHOT_INTERVAL moves so any
+//point in the history can be reached by replaying a bounded number of moves
+class MoveLog {
+  static final int SNAPSHOT_INTERVAL = 256;
+
+  PuzzleEngine engine;
+  // the moves played, of which the first cursor are applied to the board;
+  // the rest can be redone until a new move is played
+  int[] moves;
+  int size;
+  int cursor;
+  // the wires of the board at 4 bits per tile, and the station's index,
+  // after each multiple of SNAPSHOT_INTERVAL moves up to size
+  byte[][] snapshots;
+  int[] stations;
+  int snapshotCount;
+  // the wires of a snapshot being restored
+  byte[] scratch;
+
+  MoveLog(PuzzleEngine engine) {
+    this.engine = engine;
+    this.moves = new int[64];
+    this.size = 0;
+    this.cursor = 0;
+    this.snapshots = new byte[4][];
+    this.stations = new int[4];
+    this.snapshotCount = 0;
+    this.scratch = new byte[engine.board.cells.length];
+    this.snapshot();
+  }
+
+  //plays the move on the engine and, if it changed the board, records it,
+  //dropping any moves that were undone; returns whether the board changed
+  //EFFECT: plays the move and updates the log
+  boolean play(int move) {
+    if (!this.engine.play(move)) {
+      return false;
+    }
+    this.size = this.cursor;
+    this.snapshotCount = this.cursor / SNAPSHOT_INTERVAL + 1;
+    if (this.size == this.moves.length) {
+      this.moves = Arrays.copyOf(this.moves, 2 * this.size);
+    }
+    this.moves[this.size] = move;
+    this.size += 1;
+    this.cursor += 1;
+    if (this.cursor % SNAPSHOT_INTERVAL == 0) {
+      this.snapshot();
+    }
+    return true;
+  }
+
+  //takes back the last applied move, returning false if there is none
+  //EFFECT: turns the tile back, or moves the station back, updating power
+  //        around it as a move would
+  boolean undo() {
+    if (this.cursor == 0) {
+      return false;
+    }
+    this.cursor -= 1;
+    int move = this.moves[this.cursor];
+    if ((move & 1) == PuzzleEngine.ROTATE) {
+      // three more clockwise turns bring the tile back
+      this.engine.power.rotate(move >> 1, 3);
+    } else {
+      this.engine.moveStation(PackedBoard.opposite(move >> 1));
+    }
+    return true;
+  }
+
+  //applies the next undone move again, returning false if there is none
+  //EFFECT: rotates the tile or moves the station, updating power around it
+  boolean redo() {
+    if (this.cursor == this.size) {
+      return false;
+    }
+    int move = this.moves[this.cursor];
+    if ((move & 1) == PuzzleEngine.ROTATE) {
+      this.engine.rotate(move >> 1);
+    } else {
+      this.engine.moveStation(move >> 1);
+    }
+    this.cursor += 1;
+    return true;
+  }
+
+  //brings the board to how it was after the given number of moves, stepping
+  //move by move from where it is if that is shorter, and otherwise restoring
+  //the last snapshot before it and replaying the rest without updating power
+  //until the end; the target must be from 0 to the number of moves logged
+  //EFFECT: changes the board and cursor, and updates power
+  void seek(int target) {
+    if (target < 0 || target > this.size) {
+      throw new IllegalArgumentException("cannot seek to move " + target + " of " + this.size);
+    }
+    int snapshot = target / SNAPSHOT_INTERVAL;
+    if (Math.abs(target - this.cursor) <= target - snapshot * SNAPSHOT_INTERVAL) {
+      while (this.cursor > target) {
+        this.undo();
+      }
+      while (this.cursor < target) {
+        this.redo();
+      }
+      return;
+    }
+    PackedBoard board = this.engine.board;
+    int station = this.restore(snapshot);
+    for (this.cursor = snapshot * SNAPSHOT_INTERVAL; this.cursor < target; this.cursor++) {
+      int move = this.moves[this.cursor];
+      if ((move & 1) == PuzzleEngine.ROTATE) {
+        board.rotate(move >> 1, 1);
+      } else {
+        station = board.neighbour(station, move >> 1);
+      }
+    }
+    board.clear(board.index(this.engine.powerRow, this.engine.powerCol), PackedBoard.STATION);
+    board.set(station, PackedBoard.STATION);
+    this.engine.powerRow = board.rowOf(station);
+    this.engine.powerCol = board.colOf(station);
+    if (this.engine.power.budget > 0) {
+      this.engine.power.restart(station);
+    } else {
+      this.engine.power.powerFrom(station);
+    }
+  }
+
+  //EFFECT: records the wires of the board and the station's index
+  //        as the next snapshot
+  void snapshot() {
+    if (this.snapshotCount == this.snapshots.length) {
+      this.snapshots = Arrays.copyOf(this.snapshots, 2 * this.snapshotCount);
+      this.stations = Arrays.copyOf(this.stations, 2 * this.snapshotCount);
+    }
+    PackedBoard board = this.engine.board;
+    byte[] wires = this.snapshots[this.snapshotCount];
+    if (wires == null) {
+      wires = new byte[(board.cells.length + 1) / 2];
+      this.snapshots[this.snapshotCount] = wires;
+    }
+    PuzzleFormat.pack(ByteBuffer.wrap(wires), board.cells);
+    this.stations[this.snapshotCount] = board.index(this.engine.powerRow, this.engine.powerCol);
+    this.snapshotCount += 1;
+  }
+
+  //puts the wires of the given snapshot back on the board, leaving the station
+  //where it is, and returns the station's index in the snapshot
+  //EFFECT: changes the wires of the tiles that differ and recounts the board
+  int restore(int snapshot) {
+    PackedBoard board = this.engine.board;
+    PuzzleFormat.unpack(ByteBuffer.wrap(this.snapshots[snapshot]), 0, this.scratch);
+    for (int i = 0; i < this.scratch.length; i++) {
+      int cell = board.cells[i];
+      if ((cell & PackedBoard.WIRES) != this.scratch[i]) {
+        board.cells[i] = (byte) ((cell & ~PackedBoard.WIRES) | this.scratch[i]);
+        board.markDirty(i);
+      }
+    }
+    board.recount();
+    return this.stations[snapshot];
+  }
+}
+
+//examples class for testing
+class ExamplesMoveLog {
+  PuzzleEngine engine;
+  MoveLog log;
+  // the cells of the board when the log was started
+  byte[] start;
+
+  //initialises a generated 6x5 puzzle with the station in the middle
+  //and a log of its moves
+  void initData() {
+    this.engine = new PuzzleEngine(6, 5, new Random(11));
+    this.engine.powerRow = 2;
+    this.engine.powerCol = 2;
+    this.engine.generate();
+    this.log = new MoveLog(this.engine);
+    this.start = this.engine.board.cells.clone();
+  }
+
+  //returns the first direction the station can move in, or 0 if none
+  int stationExit() {
+    PackedBoard board = this.engine.board;
+    int station = board.index(this.engine.powerRow, this.engine.powerCol);
+    for (int dir = PackedBoard.LEFT; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+      if (board.connects(station, dir)) {
+        return dir;
+      }
+    }
+    return 0;
+  }
+
+  //plays moves made from the random numbers until count of them are logged,
+  //rotating tiles except when the station can move and the number says so
+  //EFFECT: plays the moves through the log
+  void playRandom(int count, Random rand) {
+    while (this.log.size < count) {
+      int exit = this.stationExit();
+      if (exit != 0 && rand.nextInt(4) == 0) {
+        this.log.play(PuzzleEngine.stationMove(exit));
+      } else {
+        this.log.play(PuzzleEngine.rotateMove(rand.nextInt(30)));
+      }
+    }
+  }
+
+  //test for play
+  void testPlay(Tester t) {
+    this.initData();
+    t.checkExpect(this.log.play(PuzzleEngine.rotateMove(7)), true);
+    t.checkExpect(this.log.play(PuzzleEngine.rotateMove(30)), false);
+    t.checkExpect(this.log.size, 1);
+    t.checkExpect(this.log.moves[0], PuzzleEngine.rotateMove(7));
+    this.log.undo();
+    // a new move drops the undone one
+    this.log.play(PuzzleEngine.rotateMove(8));
+    t.checkExpect(this.log.size, 1);
+    t.checkExpect(this.log.moves[0], PuzzleEngine.rotateMove(8));
+    this.playRandom(600, new Random(1));
+    t.checkExpect(this.log.snapshotCount, 3);
+    t.checkExpect(this.log.moves.length >= 600, true);
+  }
+
+  //test for undo
+  void testUndo(Tester t) {
+    this.initData();
+    t.checkExpect(this.log.undo(), false);
+    this.playRandom(40, new Random(2));
+    for (int i = 0; i < 40; i++) {
+      t.checkExpect(this.log.undo(), true);
+    }
+    t.checkExpect(this.log.cursor, 0);
+    t.checkExpect(this.engine.board.cells, this.start);
+    t.checkExpect(this.engine.powerRow, 2);
+    t.checkExpect(this.log.undo(), false);
+  }
+
+  //test for redo
+  void testRedo(Tester t) {
+    this.initData();
+    this.playRandom(40, new Random(3));
+    byte[] end = this.engine.board.cells.clone();
+    t.checkExpect(this.log.redo(), false);
+    for (int i = 0; i < 25; i++) {
+      this.log.undo();
+    }
+    for (int i = 0; i < 25; i++) {
+      t.checkExpect(this.log.redo(), true);
+    }
+    t.checkExpect(this.engine.board.cells, end);
+    t.checkExpect(this.log.redo(), false);
+  }
+
+  //test for seek
+  void testSeek(Tester t) {
+    this.initData();
+    this.playRandom(700, new Random(4));
+    byte[] end = this.engine.board.cells.clone();
+    int endRow = this.engine.powerRow;
+    int endCol = this.engine.powerCol;
+    // far back, through a snapshot, and forward again
+    this.log.seek(3);
+    t.checkExpect(this.log.cursor, 3);
+    for (int i = 0; i < 3; i++) {
+      this.log.undo();
+    }
+    t.checkExpect(this.engine.board.cells, this.start);
+    this.log.seek(700);
+    t.checkExpect(this.engine.board.cells, end);
+    t.checkExpect(this.engine.powerRow, endRow);
+    t.checkExpect(this.engine.powerCol, endCol);
+    // close by, one move at a time
+    this.log.seek(698);
+    this.log.seek(700);
+    t.checkExpect(this.engine.board.cells, end);
+    t.checkExpect(this.log.cursor, 700);
+    // past either end of the log, leaving the board alone
+    String message = "";
+    try {
+      this.log.seek(701);
+    } catch (IllegalArgumentException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "cannot seek to move 701 of 700");
+    try {
+      this.log.seek(-1);
+    } catch (IllegalArgumentException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "cannot seek to move -1 of 700");
+    t.checkExpect(this.engine.board.cells, end);
+    t.checkExpect(this.log.cursor, 700);
+  }
+
+  //test for snapshot and restore
+  void testSnapshot(Tester t) {
+    this.initData();
+    t.checkExpect(this.log.snapshotCount, 1);
+    t.checkExpect(this.log.stations[0], this.engine.board.index(2, 2));
+    t.checkExpect(this.log.snapshots[0].length, 15);
+    this.engine.rotate(0);
+    this.engine.rotate(29);
+    this.engine.board.trackChanges();
+    t.checkExpect(this.log.restore(0), this.engine.board.index(2, 2));
+    t.checkExpect(this.engine.board.dirtyCount, 2);
+    t.checkExpect(this.engine.board.wires(0), this.start[0] & PackedBoard.WIRES);
+    t.checkExpect(this.engine.board.wires(29), this.start[29] & PackedBoard.WIRES);
+    this.log.snapshot();
+    t.checkExpect(this.log.snapshotCount, 2);
+    t.checkExpect(this.log.snapshots[1], this.log.snapshots[0]);
+  }
+}
@@ -0,0 +1,401 @@
+import tester.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+//represents a board too large for the heap: the same bits as a PackedBoard,
+//one byte per tile in the same order, kept outside the heap in direct
+//buffers or in a mapped file, so the collector sees a few buffer objects
+//however many tiles there are. Tiles are indexed by longs and stored in
+//chunks, since one buffer cannot hold more than 2^31 bytes; power is searched
+//without a queue, keeping the way back to the source in each tile's spare bits
+class OffHeapBoard {
+  // the chunks are 2^CHUNK_BITS bytes, except perhaps the last
+  static final int CHUNK_BITS = 30;
+  // while power is searched, the two top bits of a tile hold the direction
+  // it was reached from, as the number of places the direction bit is shifted
+  static final int PARENT_SHIFT = 6;
+  static final int PARENT = 3 << PARENT_SHIFT;
+  // clears the powered and parent bits of eight tiles at a time
+  static final long KEEP = 0x1F1F1F1F1F1F1F1FL;
+
+  int width;
+  int height;
+  long tiles;
+  // the bytes of the tiles, chunkBits of index to a chunk
+  ByteBuffer[] chunks;
+  int chunkBits;
+  long chunkMask;
+  // whether the chunks are mapped from a file
+  boolean mapped;
+  // the tile power was last searched from, and how many tiles it reached
+  long source;
+  long reached;
+
+  OffHeapBoard(int width, int height) {
+    this(width, height, null, CHUNK_BITS);
+  }
+
+  OffHeapBoard(int width, int height, Path file) {
+    this(width, height, file, CHUNK_BITS);
+  }
+
+  //makes a board in chunks of 2^chunkBits bytes, at least 8, mapped from
+  //the file if there is one and allocated directly otherwise; the tiles of
+  //a file that already holds a board are kept, and a new file starts empty
+  OffHeapBoard(int width, int height, Path file, int chunkBits) {
+    if (width < 1 || height < 1 || chunkBits < 3 || chunkBits > CHUNK_BITS) {
+      throw new IllegalArgumentException("bad board size: " + width + "x" + height);
+    }
+    this.width = width;
+    this.height = height;
+    this.tiles = (long) width * height;
+    this.chunkBits = chunkBits;
+    this.chunkMask = (1L << chunkBits) - 1;
+    this.chunks = new ByteBuffer[(int) ((this.tiles + this.chunkMask) >> chunkBits)];
+    this.mapped = file != null;
+    this.source = 0;
+    this.reached = 0;
+    if (file == null) {
+      for (int c = 0; c < this.chunks.length; c++) {
+        this.chunks[c] = ByteBuffer.allocateDirect(this.chunkSize(c));
+      }
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      for (int c = 0; c < this.chunks.length; c++) {
+        this.chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, (long) c << chunkBits,
+            this.chunkSize(c));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //returns the number of bytes in the given chunk
+  int chunkSize(int chunk) {
+    return (int) Math.min(1L << this.chunkBits, this.tiles - ((long) chunk << this.chunkBits));
+  }
+
+  //returns the index of the tile at the given row and col
+  long index(int row, int col) {
+    return (long) col * this.width + row;
+  }
+
+  //returns all the bits of the tile at the given index
+  int get(long index) {
+    ByteBuffer chunk = this.chunks[(int) (index >>> this.chunkBits)];
+    return chunk.get((int) (index & this.chunkMask)) & 0xFF;
+  }
+
+  //EFFECT: sets all the bits of the tile at the given index
+  void put(long index, int bits) {
+    ByteBuffer chunk = this.chunks[(int) (index >>> this.chunkBits)];
+    chunk.put((int) (index & this.chunkMask), (byte) bits);
+  }
+
+  //returns the connection bits of the tile at the given index
+  int wires(long index) {
+    return this.get(index) & PackedBoard.WIRES;
+  }
+
+  //EFFECT: turns on the given bits of the tile at the given index
+  void set(long index, int bits) {
+    this.put(index, this.get(index) | bits);
+  }
+
+  //EFFECT: turns off the given bits of the tile at the given index
+  void clear(long index, int bits) {
+    this.put(index, this.get(index) & ~bits);
+  }
+
+  //rotates the tile at the given index clockwise; power is not updated
+  //until the next search
+  //EFFECT: updates the connection bits of the tile
+  void rotate(long index, int rotations) {
+    int cell = this.get(index);
+    this.put(index, (cell & ~PackedBoard.WIRES)
+        | PackedBoard.rotateWires(cell & PackedBoard.WIRES, rotations));
+  }
+
+  //returns the index of the neighbour in the given direction,
+  //or -1 if that neighbour would be off the board
+  long neighbour(long index, int dir) {
+    long row = index % this.width;
+    if (dir == PackedBoard.LEFT) {
+      return row > 0 ? index - 1 : -1;
+    } else if (dir == PackedBoard.RIGHT) {
+      return row < this.width - 1 ? index + 1 : -1;
+    } else if (dir == PackedBoard.TOP) {
+      return index >= this.width ? index - this.width : -1;
+    } else {
+      return index < this.tiles - this.width ? index + this.width : -1;
+    }
+  }
+
+  //determines if the tile at the given index and its neighbour
+  //in the given direction have wires that meet
+  boolean connects(long index, int dir) {
+    long other = this.neighbour(index, dir);
+    return other >= 0
+        && (this.get(index) & dir) != 0
+        && (this.get(other) & PackedBoard.opposite(dir)) != 0;
+  }
+
+  //generates a new puzzle row by row straight into the board, rotates every
+  //tile at random as it goes, places the station in the top-left corner and
+  //powers the board from it
+  //EFFECT: overwrites every tile, and updates source and reached
+  void generate(Random rand) {
+    new RowGenerator(this.width, this.height, rand)
+        .generate(new RotatingSink(new OffHeapSink(this), rand));
+    this.set(0, PackedBoard.STATION);
+    this.powerFrom(0);
+  }
+
+  //EFFECT: turns off the powered and parent bits of every tile,
+  //        eight tiles at a time
+  void clearSearch() {
+    for (ByteBuffer chunk : this.chunks) {
+      int size = chunk.capacity();
+      int i = 0;
+      for (; i + 8 <= size; i += 8) {
+        chunk.putLong(i, chunk.getLong(i) & KEEP);
+      }
+      for (; i < size; i++) {
+        chunk.put(i, (byte) (chunk.get(i) & KEEP));
+      }
+    }
+  }
+
+  //powers every tile connected to the source and returns how many there are;
+  //the search goes depth first, stepping into the first unpowered neighbour
+  //whose wires meet, and back to the tile it came from once none is left,
+  //carrying on with the directions after the one it came back from, so it
+  //needs no memory beyond the tiles themselves
+  //EFFECT: sets the powered bit of exactly the tiles reached,
+  //        and updates source and reached
+  long powerFrom(long source) {
+    this.clearSearch();
+    this.source = source;
+    this.set(source, PackedBoard.POWERED);
+    long count = 1;
+    long tile = source;
+    // the next direction to try from the tile, as a shift of the direction bit
+    int shift = 0;
+    while (true) {
+      if (shift < 4) {
+        int dir = 1 << shift;
+        long next = this.connects(tile, dir) ? this.neighbour(tile, dir) : -1;
+        if (next >= 0 && (this.get(next) & PackedBoard.POWERED) == 0) {
+          int back = Integer.numberOfTrailingZeros(PackedBoard.opposite(dir));
+          this.set(next, PackedBoard.POWERED | (back << PARENT_SHIFT));
+          count += 1;
+          tile = next;
+          shift = 0;
+        } else {
+          shift += 1;
+        }
+      } else if (tile == source) {
+        break;
+      } else {
+        int cell = this.get(tile);
+        int back = 1 << ((cell & PARENT) >> PARENT_SHIFT);
+        this.put(tile, cell & ~PARENT);
+        tile = this.neighbour(tile, back);
+        shift = Integer.numberOfTrailingZeros(PackedBoard.opposite(back)) + 1;
+      }
+    }
+    this.reached = count;
+    return count;
+  }
+
+  //determines if every tile was powered by the last search
+  boolean allPowered() {
+    return this.reached == this.tiles;
+  }
+
+  //EFFECT: writes the tiles through to the file, if the board is mapped
+  void flush() {
+    if (this.mapped) {
+      for (ByteBuffer chunk : this.chunks) {
+        ((MappedByteBuffer) chunk).force();
+      }
+    }
+  }
+}
+
+//represents a sink that writes rows straight into an off-heap board
+class OffHeapSink implements RowSink {
+  OffHeapBoard board;
+
+  OffHeapSink(OffHeapBoard board) {
+    this.board = board;
+  }
+
+  //EFFECT: sets all the bits of the tiles in row y to their wires
+  public void accept(int y, byte[] wires) {
+    long start = this.board.index(0, y);
+    for (int x = 0; x < wires.length; x++) {
+      this.board.put(start + x, wires[x]);
+    }
+  }
+}
+
+//examples class for testing
+class ExamplesOffHeapBoard {
+  OffHeapBoard board;
+
+  //initialises an empty 5x7 board in chunks of 16 tiles,
+  //so the last chunk holds only 3
+  void initData() {
+    this.board = new OffHeapBoard(5, 7, null, 4);
+  }
+
+  //test for the constructor and chunkSize
+  void testChunks(Tester t) {
+    this.initData();
+    t.checkExpect(this.board.tiles, 35L);
+    t.checkExpect(this.board.chunks.length, 3);
+    t.checkExpect(this.board.chunkSize(0), 16);
+    t.checkExpect(this.board.chunkSize(2), 3);
+    t.checkExpect(this.board.chunks[0].isDirect(), true);
+    t.checkExpect(new OffHeapBoard(4, 4).chunks.length, 1);
+    String message = "";
+    try {
+      new OffHeapBoard(0, 4);
+    } catch (IllegalArgumentException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "bad board size: 0x4");
+  }
+
+  //test for index, get, put, wires, set and clear, on both sides of a chunk
+  void testBits(Tester t) {
+    this.initData();
+    t.checkExpect(this.board.index(1, 3), 16L);
+    this.board.put(15, PackedBoard.LEFT | PackedBoard.POWERED);
+    this.board.set(16, PackedBoard.TOP | PackedBoard.STATION);
+    this.board.clear(15, PackedBoard.POWERED);
+    t.checkExpect(this.board.get(15), PackedBoard.LEFT);
+    t.checkExpect(this.board.get(16), PackedBoard.TOP | PackedBoard.STATION);
+    t.checkExpect(this.board.wires(16), PackedBoard.TOP);
+    t.checkExpect(this.board.chunks[1].get(0), (byte) (PackedBoard.TOP | PackedBoard.STATION));
+  }
+
+  //test for rotate
+  void testRotate(Tester t) {
+    this.initData();
+    this.board.put(34, PackedBoard.LEFT | PackedBoard.TOP | PackedBoard.POWERED);
+    this.board.rotate(34, 1);
+    t.checkExpect(this.board.get(34), PackedBoard.TOP | PackedBoard.RIGHT | PackedBoard.POWERED);
+    this.board.rotate(34, 3);
+    t.checkExpect(this.board.wires(34), PackedBoard.LEFT | PackedBoard.TOP);
+  }
+
+  //test for neighbour and connects
+  void testNeighbour(Tester t) {
+    this.initData();
+    t.checkExpect(this.board.neighbour(0, PackedBoard.LEFT), -1L);
+    t.checkExpect(this.board.neighbour(4, PackedBoard.RIGHT), -1L);
+    t.checkExpect(this.board.neighbour(6, PackedBoard.TOP), 1L);
+    t.checkExpect(this.board.neighbour(32, PackedBoard.BOTTOM), -1L);
+    t.checkExpect(this.board.neighbour(27, PackedBoard.BOTTOM), 32L);
+    this.board.put(15, PackedBoard.RIGHT);
+    this.board.put(16, PackedBoard.LEFT);
+    t.checkExpect(this.board.connects(15, PackedBoard.RIGHT), true);
+    t.checkExpect(this.board.connects(16, PackedBoard.LEFT), true);
+    t.checkExpect(this.board.connects(16, PackedBoard.RIGHT), false);
+  }
+
+  //test for generate and OffHeapSink, which must match a PackedBoard
+  //generated from the same random numbers
+  void testGenerate(Tester t) {
+    this.initData();
+    this.board.generate(new Random(8));
+    Random rand = new Random(8);
+    PackedBoard same = new PackedBoard(5, 7);
+    new RowGenerator(5, 7, rand).generate(new RotatingSink(new BoardSink(same), rand));
+    boolean matches = true;
+    for (int i = 0; i < 35; i++) {
+      matches = matches && this.board.wires(i) == same.wires(i);
+    }
+    t.checkExpect(matches, true);
+    t.checkExpect(this.board.get(0) & PackedBoard.STATION, PackedBoard.STATION);
+    ConnectivityEngine power = new ConnectivityEngine(same);
+    power.powerFrom(0);
+    t.checkExpect(this.board.reached, (long) power.reached);
+    t.checkExpect(this.board.allPowered(), false);
+  }
+
+  //test for powerFrom on a solved board and on a scrambled one
+  void testPowerFrom(Tester t) {
+    this.initData();
+    new RowGenerator(5, 7, new Random(2)).generate(new OffHeapSink(this.board));
+    t.checkExpect(this.board.powerFrom(17), 35L);
+    t.checkExpect(this.board.source, 17L);
+    t.checkExpect(this.board.allPowered(), true);
+    boolean clean = true;
+    for (int i = 0; i < 35; i++) {
+      clean = clean && (this.board.get(i) & OffHeapBoard.PARENT) == 0;
+    }
+    t.checkExpect(clean, true);
+    // a large scrambled board agrees with the on-heap search, tile by tile
+    OffHeapBoard large = new OffHeapBoard(300, 200, null, 12);
+    large.generate(new Random(3));
+    PackedBoard same = new PackedBoard(300, 200);
+    for (int i = 0; i < 60000; i++) {
+      same.cells[i] = (byte) large.wires(i);
+    }
+    same.recount();
+    ConnectivityEngine power = new ConnectivityEngine(same);
+    power.powerFrom(31000);
+    t.checkExpect(large.powerFrom(31000), (long) power.reached);
+    boolean agrees = true;
+    for (int i = 0; i < 60000; i++) {
+      agrees = agrees && (large.get(i) & ~PackedBoard.STATION) == same.get(i);
+    }
+    t.checkExpect(agrees, true);
+  }
+
+  //test for clearSearch
+  void testClearSearch(Tester t) {
+    this.initData();
+    for (int i = 0; i < 35; i++) {
+      this.board.put(i, 0xFF);
+    }
+    this.board.clearSearch();
+    t.checkExpect(this.board.get(0), PackedBoard.WIRES | PackedBoard.STATION);
+    t.checkExpect(this.board.get(20), PackedBoard.WIRES | PackedBoard.STATION);
+    t.checkExpect(this.board.get(34), PackedBoard.WIRES | PackedBoard.STATION);
+  }
+
+  //test for a board mapped from a file, written out and opened again
+  void testMapped(Tester t) {
+    Path path;
+    try {
+      path = Files.createTempFile("board", ".bin");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    path.toFile().deleteOnExit();
+    OffHeapBoard written = new OffHeapBoard(6, 6, path, 4);
+    written.generate(new Random(4));
+    written.flush();
+    t.checkExpect(path.toFile().length(), 36L);
+    OffHeapBoard reopened = new OffHeapBoard(6, 6, path, 4);
+    boolean same = true;
+    for (int i = 0; i < 36; i++) {
+      same = same && reopened.get(i) == written.get(i);
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(reopened.powerFrom(0), written.reached);
+  }
+}
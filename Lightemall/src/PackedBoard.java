@@ -0,0 +1,482 @@
+import tester.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+//represents a board of tiles packed into one byte per tile,
+//indexed by col * width + row (the same column-major order as the game)
+class PackedBoard {
+  // the connection bits, in clockwise order so that
+  // a clockwise rotation is a 4-bit rotate left
+  static final int LEFT = 1;
+  static final int TOP = 2;
+  static final int RIGHT = 4;
+  static final int BOTTOM = 8;
+  static final int WIRES = LEFT | TOP | RIGHT | BOTTOM;
+  // whether the power station is on the tile, and whether it is powered
+  static final int STATION = 16;
+  static final int POWERED = 32;
+
+  int width;
+  int height;
+  byte[] cells;
+  // the number of neighbouring pairs whose wires meet, and the number of
+  // wire ends that do not meet a partner (including ends facing off the board);
+  // kept up to date by every method that changes wires
+  int matched;
+  int dangling;
+  // incremented whenever any wire changes
+  int version;
+  // the tiles changed since the list was last drained, and a bit per tile
+  // so each is listed once; both null unless trackChanges was called
+  int[] dirtyList;
+  long[] dirtyMarks;
+  int dirtyCount;
+
+  PackedBoard(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.cells = new byte[width * height];
+    this.matched = 0;
+    this.dangling = 0;
+    this.version = 0;
+    this.dirtyCount = 0;
+  }
+
+  //starts recording which tiles change, for renderers that redraw only those
+  //EFFECT: allocates the dirty list and marks, if not already tracking
+  void trackChanges() {
+    if (this.dirtyList == null) {
+      this.dirtyList = new int[this.cells.length];
+      this.dirtyMarks = new long[(this.cells.length + 63) >> 6];
+      this.dirtyCount = 0;
+    }
+  }
+
+  //EFFECT: adds the tile to the dirty list if changes are tracked and it is not listed
+  void markDirty(int index) {
+    if (this.dirtyMarks != null && (this.dirtyMarks[index >> 6] & (1L << index)) == 0) {
+      this.dirtyMarks[index >> 6] |= 1L << index;
+      this.dirtyList[this.dirtyCount] = index;
+      this.dirtyCount += 1;
+    }
+  }
+
+  //EFFECT: empties the dirty list
+  void clearDirty() {
+    for (int i = 0; i < this.dirtyCount; i++) {
+      int index = this.dirtyList[i];
+      this.dirtyMarks[index >> 6] &= ~(1L << index);
+    }
+    this.dirtyCount = 0;
+  }
+
+  //returns the index of the tile at the given row and column
+  int index(int row, int col) {
+    return col * this.width + row;
+  }
+
+  //returns the row (x coordinate) of the tile at the given index
+  int rowOf(int index) {
+    return index % this.width;
+  }
+
+  //returns the column (y coordinate) of the tile at the given index
+  int colOf(int index) {
+    return index / this.width;
+  }
+
+  //returns all the bits of the tile at the given index
+  int get(int index) {
+    return this.cells[index] & 0xFF;
+  }
+
+  //returns the connection bits of the tile at the given index
+  int wires(int index) {
+    return this.cells[index] & WIRES;
+  }
+
+  //determines if the tile at the given index has all of the given bits
+  boolean has(int index, int bits) {
+    return (this.cells[index] & bits) == bits;
+  }
+
+  //EFFECT: turns on the given bits of the tile at the given index
+  void set(int index, int bits) {
+    if ((bits & WIRES) != 0) {
+      this.countSides(index, -1);
+      this.cells[index] |= bits;
+      this.countSides(index, 1);
+    } else {
+      this.cells[index] |= bits;
+    }
+    this.markDirty(index);
+  }
+
+  //EFFECT: turns off the given bits of the tile at the given index
+  void clear(int index, int bits) {
+    if ((bits & WIRES) != 0) {
+      this.countSides(index, -1);
+      this.cells[index] &= ~bits;
+      this.countSides(index, 1);
+    } else {
+      this.cells[index] &= ~bits;
+    }
+    this.markDirty(index);
+  }
+
+  //adds the links on the four sides of a tile to the counters, or takes them
+  //away if sign is -1; a wire that meets its partner is one matched link,
+  //a wire on only one side is one dangling end
+  //EFFECT: updates matched, dangling and version
+  void countSides(int index, int sign) {
+    int cell = this.cells[index];
+    for (int dir = LEFT; dir <= BOTTOM; dir <<= 1) {
+      int other = this.neighbour(index, dir);
+      boolean mine = (cell & dir) != 0;
+      boolean theirs = other >= 0 && (this.cells[other] & opposite(dir)) != 0;
+      if (mine && theirs) {
+        this.matched += sign;
+      } else if (mine || theirs) {
+        this.dangling += sign;
+      }
+    }
+    this.version += 1;
+  }
+
+  //recounts the links of the whole board, after its cells were written directly;
+  //every wire end that does not meet its partner is dangling
+  //EFFECT: updates matched, dangling and version
+  void recount() {
+    this.matched = BoardKernels.countMatched(this.cells, this.width);
+    this.dangling = BoardKernels.countEnds(this.cells) - 2 * this.matched;
+    this.version += 1;
+  }
+
+  //rotates the connection bits of a mask clockwise
+  static int rotateWires(int wires, int rotations) {
+    int turns = rotations & 3;
+    return ((wires << turns) | (wires >> (4 - turns))) & WIRES;
+  }
+
+  //returns the direction opposite to the given one
+  static int opposite(int dir) {
+    return rotateWires(dir, 2);
+  }
+
+  //rotates the tile at the given index clockwise
+  //EFFECT: updates the connection bits of the tile
+  void rotate(int index, int rotations) {
+    this.countSides(index, -1);
+    int cell = this.cells[index];
+    this.cells[index] = (byte) ((cell & ~WIRES) | rotateWires(cell & WIRES, rotations));
+    this.countSides(index, 1);
+    this.markDirty(index);
+  }
+
+  //rotates every tile clockwise by its own number of turns, from 0 to 3,
+  //and recounts the board once rather than around every tile
+  //EFFECT: updates the connection bits of every tile and the counters
+  void rotateAll(byte[] turns) {
+    BoardKernels.rotateAll(this.cells, turns);
+    if (this.dirtyMarks != null) {
+      for (int i = 0; i < turns.length; i++) {
+        if (turns[i] != 0) {
+          this.markDirty(i);
+        }
+      }
+    }
+    this.recount();
+  }
+
+  //returns the direction bit named by a key or direction string,
+  //or 0 if the string does not name a direction
+  static int direction(String dir) {
+    if (dir.equals("left")) {
+      return LEFT;
+    } else if (dir.equals("right")) {
+      return RIGHT;
+    } else if (dir.equals("up")) {
+      return TOP;
+    } else if (dir.equals("down")) {
+      return BOTTOM;
+    } else {
+      return 0;
+    }
+  }
+
+  //returns the index of the neighbour in the given direction,
+  //or -1 if that neighbour would be off the board
+  int neighbour(int index, int dir) {
+    int row = index % this.width;
+    if (dir == LEFT) {
+      return row > 0 ? index - 1 : -1;
+    } else if (dir == RIGHT) {
+      return row < this.width - 1 ? index + 1 : -1;
+    } else if (dir == TOP) {
+      return index >= this.width ? index - this.width : -1;
+    } else {
+      return index < this.cells.length - this.width ? index + this.width : -1;
+    }
+  }
+
+  //determines if the tile at the given index and its neighbour
+  //in the given direction have wires that meet
+  boolean connects(int index, int dir) {
+    int other = this.neighbour(index, dir);
+    return other >= 0
+        && (this.cells[index] & dir) != 0
+        && (this.cells[other] & opposite(dir)) != 0;
+  }
+
+  //EFFECT: turns off the powered bit of every tile
+  void clearPower() {
+    if (this.dirtyMarks == null) {
+      BoardKernels.clearBits(this.cells, POWERED);
+      return;
+    }
+    for (int i = BoardKernels.next(this.cells, 0, POWERED); i < this.cells.length;
+        i = BoardKernels.next(this.cells, i + 1, POWERED)) {
+      this.cells[i] &= ~POWERED;
+      this.markDirty(i);
+    }
+  }
+
+  //EFFECT: loads the tile at the given index into the given flyweight piece
+  void load(GamePiece piece, int index) {
+    int cell = this.cells[index];
+    piece.row = index % this.width;
+    piece.col = index / this.width;
+    piece.left = (cell & LEFT) != 0;
+    piece.top = (cell & TOP) != 0;
+    piece.right = (cell & RIGHT) != 0;
+    piece.bottom = (cell & BOTTOM) != 0;
+    piece.powerStation = (cell & STATION) != 0;
+    piece.powered = (cell & POWERED) != 0;
+  }
+
+  //returns a GamePiece holding a copy of the tile at the given row and column
+  GamePiece pieceAt(int row, int col) {
+    GamePiece piece = new GamePiece(row, col, false, false, false, false, false, false);
+    this.load(piece, this.index(row, col));
+    return piece;
+  }
+
+  //EFFECT: writes the state of the given piece into its tile
+  void store(GamePiece piece) {
+    int cell = (piece.left ? LEFT : 0)
+        | (piece.top ? TOP : 0)
+        | (piece.right ? RIGHT : 0)
+        | (piece.bottom ? BOTTOM : 0)
+        | (piece.powerStation ? STATION : 0)
+        | (piece.powered ? POWERED : 0);
+    int index = this.index(piece.row, piece.col);
+    this.countSides(index, -1);
+    this.cells[index] = (byte) cell;
+    this.countSides(index, 1);
+    this.markDirty(index);
+  }
+
+  //returns copies of every tile as a list of columns of GamePieces
+  ArrayList<ArrayList<GamePiece>> toPieces() {
+    ArrayList<ArrayList<GamePiece>> pieces = new ArrayList<ArrayList<GamePiece>>();
+    for (int c = 0; c < this.height; c++) {
+      ArrayList<GamePiece> rowList = new ArrayList<GamePiece>();
+      for (int r = 0; r < this.width; r++) {
+        rowList.add(this.pieceAt(r, c));
+      }
+      pieces.add(rowList);
+    }
+    return pieces;
+  }
+}
+
+//examples class for testing
+class ExamplesPackedBoard {
+  PackedBoard board;
+
+  //initialises data
+  void initData() {
+    this.board = new PackedBoard(3, 2);
+  }
+
+  //test for index, rowOf and colOf
+  void testIndex(Tester t) {
+    this.initData();
+    t.checkExpect(this.board.index(0, 0), 0);
+    t.checkExpect(this.board.index(2, 0), 2);
+    t.checkExpect(this.board.index(1, 1), 4);
+    t.checkExpect(this.board.rowOf(4), 1);
+    t.checkExpect(this.board.colOf(4), 1);
+  }
+
+  //test for set, clear, has, get and wires
+  void testBits(Tester t) {
+    this.initData();
+    this.board.set(1, PackedBoard.LEFT | PackedBoard.POWERED);
+    t.checkExpect(this.board.has(1, PackedBoard.LEFT), true);
+    t.checkExpect(this.board.has(1, PackedBoard.LEFT | PackedBoard.TOP), false);
+    t.checkExpect(this.board.get(1), PackedBoard.LEFT | PackedBoard.POWERED);
+    t.checkExpect(this.board.wires(1), PackedBoard.LEFT);
+    this.board.clear(1, PackedBoard.POWERED);
+    t.checkExpect(this.board.get(1), PackedBoard.LEFT);
+  }
+
+  //test for rotateWires and opposite
+  void testRotateWires(Tester t) {
+    t.checkExpect(PackedBoard.rotateWires(PackedBoard.LEFT, 1), PackedBoard.TOP);
+    t.checkExpect(PackedBoard.rotateWires(PackedBoard.BOTTOM, 1), PackedBoard.LEFT);
+    t.checkExpect(PackedBoard.rotateWires(PackedBoard.LEFT | PackedBoard.RIGHT, 1),
+        PackedBoard.TOP | PackedBoard.BOTTOM);
+    t.checkExpect(PackedBoard.rotateWires(PackedBoard.TOP, 4), PackedBoard.TOP);
+    t.checkExpect(PackedBoard.rotateWires(PackedBoard.TOP, 0), PackedBoard.TOP);
+    t.checkExpect(PackedBoard.opposite(PackedBoard.TOP), PackedBoard.BOTTOM);
+    t.checkExpect(PackedBoard.opposite(PackedBoard.RIGHT), PackedBoard.LEFT);
+  }
+
+  //test for rotate, which must agree with GamePiece.rotate
+  void testRotate(Tester t) {
+    this.initData();
+    this.board.set(0, PackedBoard.LEFT | PackedBoard.STATION);
+    this.board.rotate(0, 1);
+    t.checkExpect(this.board.get(0), PackedBoard.TOP | PackedBoard.STATION);
+    GamePiece piece = new GamePiece(0, 0, true, false, false, false, true, false);
+    piece.rotate(1);
+    t.checkExpect(this.board.pieceAt(0, 0), piece);
+  }
+
+  //test for direction
+  void testDirection(Tester t) {
+    t.checkExpect(PackedBoard.direction("left"), PackedBoard.LEFT);
+    t.checkExpect(PackedBoard.direction("right"), PackedBoard.RIGHT);
+    t.checkExpect(PackedBoard.direction("up"), PackedBoard.TOP);
+    t.checkExpect(PackedBoard.direction("down"), PackedBoard.BOTTOM);
+    t.checkExpect(PackedBoard.direction("a"), 0);
+  }
+
+  //test for neighbour
+  void testNeighbour(Tester t) {
+    this.initData();
+    t.checkExpect(this.board.neighbour(0, PackedBoard.LEFT), -1);
+    t.checkExpect(this.board.neighbour(0, PackedBoard.TOP), -1);
+    t.checkExpect(this.board.neighbour(0, PackedBoard.RIGHT), 1);
+    t.checkExpect(this.board.neighbour(0, PackedBoard.BOTTOM), 3);
+    t.checkExpect(this.board.neighbour(5, PackedBoard.RIGHT), -1);
+    t.checkExpect(this.board.neighbour(5, PackedBoard.BOTTOM), -1);
+    t.checkExpect(this.board.neighbour(5, PackedBoard.TOP), 2);
+  }
+
+  //test for connects
+  void testConnects(Tester t) {
+    this.initData();
+    this.board.set(0, PackedBoard.RIGHT | PackedBoard.LEFT);
+    t.checkExpect(this.board.connects(0, PackedBoard.RIGHT), false);
+    this.board.set(1, PackedBoard.LEFT);
+    t.checkExpect(this.board.connects(0, PackedBoard.RIGHT), true);
+    t.checkExpect(this.board.connects(1, PackedBoard.LEFT), true);
+    t.checkExpect(this.board.connects(0, PackedBoard.LEFT), false);
+  }
+
+  //test for clearPower
+  void testClearPower(Tester t) {
+    this.initData();
+    this.board.set(0, PackedBoard.POWERED | PackedBoard.TOP);
+    this.board.set(5, PackedBoard.POWERED);
+    this.board.clearPower();
+    t.checkExpect(this.board.get(0), PackedBoard.TOP);
+    t.checkExpect(this.board.get(5), 0);
+  }
+
+  //test for countSides through set, clear and rotate
+  void testCounters(Tester t) {
+    this.initData();
+    this.board.set(0, PackedBoard.RIGHT);
+    t.checkExpect(this.board.matched, 0);
+    t.checkExpect(this.board.dangling, 1);
+    this.board.set(1, PackedBoard.LEFT | PackedBoard.BOTTOM);
+    t.checkExpect(this.board.matched, 1);
+    t.checkExpect(this.board.dangling, 1);
+    this.board.rotate(4, 1);
+    t.checkExpect(this.board.dangling, 1);
+    this.board.set(4, PackedBoard.TOP);
+    t.checkExpect(this.board.matched, 2);
+    t.checkExpect(this.board.dangling, 0);
+    this.board.rotate(0, 1);
+    t.checkExpect(this.board.matched, 1);
+    t.checkExpect(this.board.dangling, 2);
+    this.board.clear(1, PackedBoard.LEFT);
+    t.checkExpect(this.board.matched, 1);
+    t.checkExpect(this.board.dangling, 1);
+    int before = this.board.version;
+    this.board.set(2, PackedBoard.POWERED);
+    t.checkExpect(this.board.version, before);
+  }
+
+  //test for recount
+  void testRecount(Tester t) {
+    this.initData();
+    this.board.cells[0] = (byte) (PackedBoard.RIGHT | PackedBoard.BOTTOM);
+    this.board.cells[1] = (byte) PackedBoard.LEFT;
+    this.board.cells[5] = (byte) PackedBoard.RIGHT;
+    this.board.recount();
+    t.checkExpect(this.board.matched, 1);
+    t.checkExpect(this.board.dangling, 2);
+  }
+
+  //test for rotateAll
+  void testRotateAll(Tester t) {
+    this.initData();
+    this.board.set(0, PackedBoard.RIGHT);
+    this.board.set(1, PackedBoard.LEFT | PackedBoard.TOP | PackedBoard.POWERED);
+    this.board.set(4, PackedBoard.BOTTOM);
+    this.board.trackChanges();
+    this.board.rotateAll(new byte[] {0, 3, 0, 0, 2, 0});
+    t.checkExpect(this.board.get(1), PackedBoard.LEFT | PackedBoard.BOTTOM | PackedBoard.POWERED);
+    t.checkExpect(this.board.wires(4), PackedBoard.TOP);
+    t.checkExpect(this.board.matched, 2);
+    t.checkExpect(this.board.dangling, 0);
+    t.checkExpect(this.board.dirtyCount, 2);
+    t.checkExpect(this.board.dirtyList[1], 4);
+  }
+
+  //test for trackChanges, markDirty and clearDirty
+  void testDirty(Tester t) {
+    this.initData();
+    this.board.set(0, PackedBoard.LEFT);
+    t.checkExpect(this.board.dirtyCount, 0);
+    this.board.trackChanges();
+    this.board.rotate(4, 1);
+    this.board.set(2, PackedBoard.POWERED);
+    this.board.rotate(4, 1);
+    t.checkExpect(this.board.dirtyCount, 2);
+    t.checkExpect(this.board.dirtyList[0], 4);
+    t.checkExpect(this.board.dirtyList[1], 2);
+    this.board.clearDirty();
+    t.checkExpect(this.board.dirtyCount, 0);
+    this.board.clearPower();
+    t.checkExpect(this.board.dirtyCount, 1);
+    t.checkExpect(this.board.dirtyList[0], 2);
+  }
+
+  //test for load, pieceAt and store
+  void testPieces(Tester t) {
+    this.initData();
+    this.board.store(new GamePiece(2, 1, true, false, true, false, false, true));
+    t.checkExpect(this.board.get(5), PackedBoard.LEFT | PackedBoard.TOP | PackedBoard.POWERED);
+    t.checkExpect(this.board.pieceAt(2, 1),
+        new GamePiece(2, 1, true, false, true, false, false, true));
+    GamePiece flyweight = new GamePiece(0, 0, false, false, false, false, false, false);
+    this.board.load(flyweight, 5);
+    t.checkExpect(flyweight, new GamePiece(2, 1, true, false, true, false, false, true));
+  }
+
+  //test for toPieces
+  void testToPieces(Tester t) {
+    PackedBoard small = new PackedBoard(2, 1);
+    small.set(0, PackedBoard.STATION | PackedBoard.RIGHT);
+    t.checkExpect(small.toPieces(),
+        new ArrayList<ArrayList<GamePiece>>(Arrays.asList(
+            new ArrayList<GamePiece>(Arrays.asList(
+                new GamePiece(0, 0, false, true, false, false, true, false),
+                new GamePiece(1, 0, false, false, false, false, false, false))))));
+  }
+}
@@ -0,0 +1,479 @@
+import java.util.ArrayList;
+import tester.*;
+import java.util.Arrays;
+import java.util.Random;
+
+//represents a game of LightEmAll without any drawing: the board, how it is
+//generated, and the moves that can be played on it, coded as ints
+class PuzzleEngine {
+  // the kinds of move, kept in the low bit of a move code; the rest of the
+  // code is the index of the tile to rotate or the direction to move the station in
+  static final int ROTATE = 0;
+  static final int STATION = 1;
+
+  // the tiles of the board, packed one byte per tile
+  // in column-major order
+  PackedBoard board;
+  // the search used to power the board from the station
+  ConnectivityEngine power;
+  // the edges of the minimum spanning tree
+  GridEdges mst;
+  // the width and height of the board
+  int width;
+  int height;
+  // the current location of the power station,
+  // as well as its effective radius
+  int powerRow;
+  int powerCol;
+  int radius;
+  Random rand;
+  // how the spanning tree of wires is chosen
+  TreeGenerator generator;
+  // the board version isSolved last searched, and what it found
+  int checkedVersion;
+  boolean solved;
+  // the registry generation and power searches are timed in, or null
+  Metrics metrics;
+
+  PuzzleEngine(int width, int height, Random rand) {
+    this(width, height, rand, new KruskalGenerator());
+  }
+
+  PuzzleEngine(int width, int height, Random rand, TreeGenerator generator) {
+    this.board = new PackedBoard(width, height);
+    this.power = new ConnectivityEngine(this.board);
+    this.mst = new GridEdges(width * height - 1);
+    this.width = width;
+    this.height = height;
+    this.powerRow = 0;
+    this.powerCol = 0;
+    this.radius = (width * height) / 3;
+    this.rand = rand;
+    this.generator = generator;
+    this.checkedVersion = -1;
+    this.solved = false;
+    this.metrics = null;
+  }
+
+  //returns the move that rotates the tile at the given index clockwise
+  static int rotateMove(int index) {
+    return (index << 1) | ROTATE;
+  }
+
+  //returns the move that moves the station one tile in the given
+  //PackedBoard direction
+  static int stationMove(int dir) {
+    return (dir << 1) | STATION;
+  }
+
+  //generates a new puzzle: a random spanning tree of wires
+  //with every tile rotated randomly
+  //EFFECT: runs initBoard, buildMST, visualiseConnections and randRotateBoard
+  void generate() {
+    if (this.metrics != null) {
+      this.metrics.begin();
+    }
+    this.initBoard();
+    this.buildMST(this.board);
+    this.visualiseConnections();
+    this.randRotateBoard();
+    if (this.metrics != null) {
+      this.metrics.end(Metrics.GENERATE, this.board.cells.length);
+    }
+  }
+
+  // Initialises the game board with unconnected tiles
+  //EFFECT: clears every tile of the packed board
+  //        and places the power station
+  void initBoard() {
+    Arrays.fill(this.board.cells, (byte) 0);
+    this.board.recount();
+    this.board.set(this.board.index(this.powerRow, this.powerCol), PackedBoard.STATION);
+  }
+
+  //uses the engine's generator to choose a random spanning tree
+  //EFFECT: Adds Edges into the mst list
+  void buildMST(PackedBoard b) {
+    this.generator.build(b, this.rand, this.mst);
+  }
+
+  //creates a connections between connected nodes in a tree
+  //EFFECT: sets the connection bits of the tiles at both ends of every edge
+  void visualiseConnections() {
+    for (int i = 0; i < this.mst.size; i++) {
+      int from = this.mst.from[i];
+      int to = this.mst.to[i];
+
+      // on a board one tile wide, tiles above each other are also one index apart
+      if (this.board.rowOf(from) != this.board.rowOf(to)) {
+        this.board.set(from, PackedBoard.RIGHT);
+        this.board.set(to, PackedBoard.LEFT);
+      } else {
+        this.board.set(from, PackedBoard.BOTTOM);
+        this.board.set(to, PackedBoard.TOP);
+      }
+    }
+  }
+
+  //returns the wires of every tile of the solved board, read from the
+  //spanning tree rather than the board, which may have been rotated since
+  byte[] solution() {
+    byte[] wires = new byte[this.board.cells.length];
+    for (int i = 0; i < this.mst.size; i++) {
+      int from = this.mst.from[i];
+      int to = this.mst.to[i];
+      if (this.board.rowOf(from) != this.board.rowOf(to)) {
+        wires[from] |= PackedBoard.RIGHT;
+        wires[to] |= PackedBoard.LEFT;
+      } else {
+        wires[from] |= PackedBoard.BOTTOM;
+        wires[to] |= PackedBoard.TOP;
+      }
+    }
+    return wires;
+  }
+
+  // Randomly rotates each tile on the board
+  //EFFECT: randomly rotates every tile in the board
+  //        and powers every tile connected to the station
+  void randRotateBoard() {
+    byte[] turns = new byte[this.board.cells.length];
+    for (int i = 0; i < turns.length; i++) {
+      turns[i] = (byte) this.rand.nextInt(3);
+    }
+    this.board.rotateAll(turns);
+    this.hasPath(this.board.index(this.powerRow, this.powerCol));
+  }
+
+  //Check if there is a path from the source to every other cell on the board
+  //EFFECT: Updates powered status of every tile
+  boolean hasPath(int source) {
+    if (this.metrics == null) {
+      return this.power.powerFrom(source);
+    }
+    this.metrics.begin();
+    boolean all = this.power.powerFrom(source);
+    this.metrics.end(Metrics.POWER, this.power.reached);
+    return all;
+  }
+
+  //determines if the puzzle is solved, i.e. every tile is powered
+  //reads the board's link counters, which can only all line up when every wire
+  //meets a partner and there are exactly width * height - 1 links; only then
+  //is connectivity searched, once per change of the wires
+  boolean isSolved() {
+    if (this.board.dangling != 0 || this.board.matched != this.board.cells.length - 1) {
+      return false;
+    }
+    if (this.power.budget > 0) {
+      // power is still spreading, or has spread as far as it will
+      return this.power.settled && this.power.allPowered();
+    }
+    if (this.checkedVersion != this.board.version) {
+      this.checkedVersion = this.board.version;
+      this.solved = this.hasPath(this.board.index(this.powerRow, this.powerCol));
+    }
+    return this.solved;
+  }
+
+  //plays the given move code, unless the puzzle is already solved,
+  //and returns whether it changed the board
+  //EFFECT: see rotate and moveStation
+  boolean play(int move) {
+    if (this.isSolved()) {
+      return false;
+    }
+    if ((move & 1) == ROTATE) {
+      return this.rotate(move >> 1);
+    }
+    return this.moveStation(move >> 1);
+  }
+
+  //rotates the tile at the given index clockwise, returning false
+  //if there is no such tile
+  //EFFECT: rotates the tile and updates power around it
+  boolean rotate(int index) {
+    if (index < 0 || index >= this.board.cells.length) {
+      return false;
+    }
+    this.power.rotate(index, 1);
+    return true;
+  }
+
+  //moves the power station one tile in the given PackedBoard direction,
+  //returning false if the station's wires do not lead that way
+  //EFFECT: moves the station bit, updates powerRow and powerCol,
+  //        and re-roots power at the new tile
+  boolean moveStation(int dir) {
+    int station = this.board.index(this.powerRow, this.powerCol);
+    if (dir == 0 || !this.board.connects(station, dir)) {
+      return false;
+    }
+    int next = this.board.neighbour(station, dir);
+    this.board.clear(station, PackedBoard.STATION);
+    this.board.set(next, PackedBoard.STATION);
+    this.powerRow = this.board.rowOf(next);
+    this.powerCol = this.board.colOf(next);
+    this.power.moveSource(next);
+    return true;
+  }
+}
+
+//examples class for testing
+class ExamplesPuzzleEngine {
+  PuzzleEngine engine1;
+  PuzzleEngine engine2;
+
+  //initialises the data for testing
+  void initData() {
+    this.engine1 = new PuzzleEngine(3, 3, new Random(2));
+    this.engine2 = new PuzzleEngine(2, 2, new Random(2));
+  }
+
+  //initialises engine1 with its solved board, powered from the station
+  void initSolved() {
+    this.initData();
+    this.engine1.initBoard();
+    this.engine1.buildMST(this.engine1.board);
+    this.engine1.visualiseConnections();
+    this.engine1.hasPath(0);
+  }
+
+  //test for rotateMove and stationMove
+  void testMoveCodes(Tester t) {
+    t.checkExpect(PuzzleEngine.rotateMove(0), 0);
+    t.checkExpect(PuzzleEngine.rotateMove(5), 10);
+    t.checkExpect(PuzzleEngine.stationMove(PackedBoard.RIGHT), 9);
+    t.checkExpect(PuzzleEngine.stationMove(PackedBoard.BOTTOM) & 1, PuzzleEngine.STATION);
+  }
+
+  //test for generate
+  void testGenerate(Tester t) {
+    this.initData();
+    this.engine1.generate();
+    PuzzleEngine steps = new PuzzleEngine(3, 3, new Random(2));
+    steps.initBoard();
+    steps.buildMST(steps.board);
+    steps.visualiseConnections();
+    steps.randRotateBoard();
+    t.checkExpect(this.engine1.board.cells, steps.board.cells);
+    t.checkExpect(this.engine1.mst.size, 8);
+  }
+
+  //testing the initBoard method
+  void testInitBoard(Tester t) {
+    this.initData();
+    t.checkExpect(this.engine1.board.cells, new byte[9]);
+    this.engine1.initBoard();
+    t.checkExpect(this.engine1.board.toPieces(),
+        new ArrayList<ArrayList<GamePiece>>(
+            Arrays.asList(
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 0, false, false, false, false, true, false),
+                    new GamePiece(1, 0, false, false, false, false, false, false),
+                    new GamePiece(2, 0, false, false, false, false, false, false))),
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 1, false, false, false, false, false, false),
+                    new GamePiece(1, 1, false, false, false, false, false, false),
+                    new GamePiece(2, 1, false, false, false, false, false, false))),
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 2, false, false, false, false, false, false),
+                    new GamePiece(1, 2, false, false, false, false, false, false),
+                    new GamePiece(2, 2, false, false, false, false, false, false))))));
+  }
+
+  //testing the randRotateBoard method
+  void testRandRotateBoard(Tester t) {
+    this.initData();
+    this.engine1.initBoard();
+    this.engine1.buildMST(this.engine1.board);
+    this.engine1.visualiseConnections();
+    t.checkExpect(this.engine1.board.toPieces(),
+        new ArrayList<ArrayList<GamePiece>>(
+            Arrays.asList(
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 0, false, true, false, false, true, false),
+                    new GamePiece(1, 0, true, false, false, true, false, false),
+                    new GamePiece(2, 0, false, false, false, true, false, false))),
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 1, false, true, false, true, false, false),
+                    new GamePiece(1, 1, true, true, true, false, false, false),
+                    new GamePiece(2, 1, true, false, true, true, false, false))),
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 2, false, false, true, false, false, false),
+                    new GamePiece(1, 2, false, true, false, false, false, false),
+                    new GamePiece(2, 2, true, false, true, false, false, false))))));
+    this.engine1.randRotateBoard();
+    t.checkExpect(this.engine1.board.toPieces(),
+        new ArrayList<ArrayList<GamePiece>>(
+            Arrays.asList(
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 0, false, false, false, true, true, true),
+                    new GamePiece(1, 0, true, false, false, true, false, false),
+                    new GamePiece(2, 0, false, false, true, false, false, false))),
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 1, true, false, true, false, false, true),
+                    new GamePiece(1, 1, false, true, true, true, false, false),
+                    new GamePiece(2, 1, true, false, true, true, false, false))),
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 2, false, false, false, true, false, false),
+                    new GamePiece(1, 2, true, false, false, false, false, false),
+                    new GamePiece(2, 2, true, false, true, false, false, false))))));
+  }
+
+  //testing the hasPath method
+  void testHasPath(Tester t) {
+    this.initSolved();
+    t.checkExpect(this.engine1.board.toPieces(),
+        new ArrayList<ArrayList<GamePiece>>(
+            Arrays.asList(
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 0, false, true, false, false, true, true),
+                    new GamePiece(1, 0, true, false, false, true, false, true),
+                    new GamePiece(2, 0, false, false, false, true, false, true))),
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 1, false, true, false, true, false, true),
+                    new GamePiece(1, 1, true, true, true, false, false, true),
+                    new GamePiece(2, 1, true, false, true, true, false, true))),
+                new ArrayList<GamePiece>(Arrays.asList(
+                    new GamePiece(0, 2, false, false, true, false, false, true),
+                    new GamePiece(1, 2, false, true, false, false, false, true),
+                    new GamePiece(2, 2, true, false, true, false, false, true))))));
+    t.checkExpect(this.engine1.hasPath(4), true);
+    t.checkExpect(this.engine1.hasPath(0), true);
+    this.engine1.randRotateBoard();
+    t.checkExpect(this.engine1.hasPath(4), false);
+  }
+
+  //testing the isSolved method
+  void testIsSolved(Tester t) {
+    this.initSolved();
+    t.checkExpect(this.engine1.board.matched, 8);
+    t.checkExpect(this.engine1.board.dangling, 0);
+    t.checkExpect(this.engine1.isSolved(), true);
+    this.engine1.board.rotate(this.engine1.board.index(1, 1), 1);
+    t.checkExpect(this.engine1.board.dangling > 0, true);
+    t.checkExpect(this.engine1.isSolved(), false);
+    this.engine1.board.rotate(this.engine1.board.index(1, 1), 3);
+    t.checkExpect(this.engine1.isSolved(), true);
+    this.engine1.randRotateBoard();
+    t.checkExpect(this.engine1.isSolved(), false);
+  }
+
+  //testing isSolved while power spreads progressively
+  void testIsSolvedProgressive(Tester t) {
+    this.initSolved();
+    this.engine1.power.progressive(2);
+    t.checkExpect(this.engine1.isSolved(), true);
+    this.engine1.rotate(4);
+    this.engine1.rotate(4);
+    this.engine1.rotate(4);
+    this.engine1.rotate(4);
+    // the wires are solved, but power has not spread back yet
+    t.checkExpect(this.engine1.isSolved(), false);
+    while (!this.engine1.power.advance()) {
+      t.checkExpect(this.engine1.isSolved(), false);
+    }
+    t.checkExpect(this.engine1.isSolved(), true);
+  }
+
+  //testing the rotate method
+  void testRotate(Tester t) {
+    this.initSolved();
+    t.checkExpect(this.engine1.rotate(9), false);
+    t.checkExpect(this.engine1.rotate(-1), false);
+    t.checkExpect(this.engine1.rotate(1), true);
+    t.checkExpect(this.engine1.board.pieceAt(1, 0),
+        new GamePiece(1, 0, true, false, true, false, false, true));
+    t.checkExpect(this.engine1.board.has(4, PackedBoard.POWERED), false);
+  }
+
+  //testing the moveStation method
+  void testMoveStation(Tester t) {
+    this.initSolved();
+    t.checkExpect(this.engine1.moveStation(PackedBoard.LEFT), false);
+    t.checkExpect(this.engine1.moveStation(0), false);
+    t.checkExpect(this.engine1.moveStation(PackedBoard.RIGHT), true);
+    t.checkExpect(this.engine1.powerRow, 1);
+    t.checkExpect(this.engine1.board.has(0, PackedBoard.STATION), false);
+    t.checkExpect(this.engine1.board.has(1, PackedBoard.STATION), true);
+    t.checkExpect(this.engine1.power.source, 1);
+    t.checkExpect(this.engine1.moveStation(PackedBoard.BOTTOM), true);
+    t.checkExpect(this.engine1.powerCol, 1);
+    t.checkExpect(this.engine1.moveStation(PackedBoard.TOP), true);
+    t.checkExpect(this.engine1.powerCol, 0);
+  }
+
+  //testing the play method
+  void testPlay(Tester t) {
+    this.initSolved();
+    // nothing can be played on a solved puzzle
+    t.checkExpect(this.engine1.play(PuzzleEngine.rotateMove(4)), false);
+    t.checkExpect(this.engine1.play(PuzzleEngine.stationMove(PackedBoard.RIGHT)), false);
+    this.engine1.board.rotate(8, 1);
+    t.checkExpect(this.engine1.play(PuzzleEngine.stationMove(PackedBoard.RIGHT)), true);
+    t.checkExpect(this.engine1.powerRow, 1);
+    t.checkExpect(this.engine1.play(PuzzleEngine.rotateMove(8)), true);
+    t.checkExpect(this.engine1.play(PuzzleEngine.rotateMove(8)), true);
+    t.checkExpect(this.engine1.play(PuzzleEngine.rotateMove(8)), true);
+    t.checkExpect(this.engine1.isSolved(), true);
+  }
+
+  //test for the method buildMST
+  void testBuildMST(Tester t) {
+    this.initData();
+    this.engine2.initBoard();
+    t.checkExpect(this.engine2.mst.size, 0);
+    this.engine2.buildMST(this.engine2.board);
+    t.checkExpect(this.engine2.mst.size, 3);
+    t.checkExpect(this.engine2.mst.from, new int[] {0, 2, 0});
+    t.checkExpect(this.engine2.mst.to, new int[] {1, 3, 2});
+    t.checkExpect(this.engine2.mst.weight, new int[] {8, 17, 22});
+  }
+
+  //test for the method solution
+  void testSolution(Tester t) {
+    this.initData();
+    this.engine2.generate();
+    t.checkExpect(this.engine2.solution(), new byte[] {12, 1, 6, 1});
+    t.checkExpect(new PuzzleEngine(3, 2, new Random(1)).solution(), new byte[6]);
+    PuzzleEngine column = new PuzzleEngine(1, 4, new Random(1));
+    column.generate();
+    t.checkExpect(column.solution(), new byte[] {8, 10, 10, 2});
+  }
+
+  //test for the method visualiseConnections
+  void testVisualiseConnections(Tester t) {
+    this.initData();
+    this.engine2.initBoard();
+    this.engine2.buildMST(this.engine2.board);
+    GamePiece gp1 = this.engine2.board.pieceAt(0, 0);
+    GamePiece gp2 = this.engine2.board.pieceAt(1, 0);
+    GamePiece gp3 = this.engine2.board.pieceAt(0, 1);
+    GamePiece gp4 = this.engine2.board.pieceAt(1, 1);
+    t.checkExpect(gp1, new GamePiece(0, 0, false, false, false, false, true, false));
+    t.checkExpect(gp2, new GamePiece(1, 0, false, false, false, false, false, false));
+    t.checkExpect(gp3, new GamePiece(0, 1, false, false, false, false, false, false));
+    t.checkExpect(gp4, new GamePiece(1, 1, false, false, false, false, false, false));
+    this.engine2.visualiseConnections();
+    gp1 = this.engine2.board.pieceAt(0, 0);
+    gp2 = this.engine2.board.pieceAt(1, 0);
+    gp3 = this.engine2.board.pieceAt(0, 1);
+    gp4 = this.engine2.board.pieceAt(1, 1);
+    t.checkExpect(gp1, new GamePiece(0, 0, false, true, false, true, true, false));
+    t.checkExpect(gp2, new GamePiece(1, 0, true, false, false, false, false, false));
+    t.checkExpect(gp3, new GamePiece(0, 1, false, true, true, false, false, false));
+    t.checkExpect(gp4, new GamePiece(1, 1, true, false, false, false, false, false));
+    // a board one tile wide is wired top to bottom
+    PuzzleEngine column = new PuzzleEngine(1, 5, new Random(1));
+    column.initBoard();
+    column.buildMST(column.board);
+    column.visualiseConnections();
+    t.checkExpect(column.board.wires(0), PackedBoard.BOTTOM);
+    t.checkExpect(column.board.wires(2), PackedBoard.TOP | PackedBoard.BOTTOM);
+    t.checkExpect(column.board.wires(4), PackedBoard.TOP);
+    t.checkExpect(column.board.matched, 4);
+    t.checkExpect(column.board.dangling, 0);
+    t.checkExpect(column.isSolved(), true);
+  }
+}
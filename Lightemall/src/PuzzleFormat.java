@@ -0,0 +1,410 @@
+import tester.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+//represents the binary format of one puzzle: a header of its width, height,
+//station row and column as ints and its seed as a long, then the wires of
+//every tile as scrambled, then as solved, each at 4 bits per tile with two
+//tiles to a byte, the first in the low half
+class PuzzleFormat {
+  static final int HEADER = 4 * 4 + 8;
+
+  //returns the number of bytes the wires of a board of the given size take
+  static int wireBytes(int width, int height) {
+    return (width * height + 1) / 2;
+  }
+
+  //returns the number of bytes a puzzle of the given size takes
+  static int size(int width, int height) {
+    return HEADER + 2 * wireBytes(width, height);
+  }
+
+  //writes the puzzle at the buffer's position: the board as it is, and the
+  //given solution wires
+  //EFFECT: advances the buffer's position past the puzzle
+  static void write(ByteBuffer out, PackedBoard board, byte[] solution, int powerRow,
+      int powerCol, long seed) {
+    out.putInt(board.width).putInt(board.height).putInt(powerRow).putInt(powerCol).putLong(seed);
+    pack(out, board.cells);
+    pack(out, solution);
+  }
+
+  //EFFECT: writes the wires of the cells at 4 bits each, advancing the buffer's position
+  static void pack(ByteBuffer out, byte[] cells) {
+    int pairs = cells.length / 2;
+    for (int i = 0; i < pairs; i++) {
+      out.put((byte) ((cells[2 * i] & PackedBoard.WIRES)
+          | ((cells[2 * i + 1] & PackedBoard.WIRES) << 4)));
+    }
+    if (cells.length % 2 != 0) {
+      out.put((byte) (cells[cells.length - 1] & PackedBoard.WIRES));
+    }
+  }
+
+  //EFFECT: reads the wires of the cells from 4 bits each, starting at the given
+  //        position of the buffer, without moving it; clears all other bits
+  static void unpack(ByteBuffer in, int position, byte[] cells) {
+    int pairs = cells.length / 2;
+    for (int i = 0; i < pairs; i++) {
+      int both = in.get(position + i);
+      cells[2 * i] = (byte) (both & PackedBoard.WIRES);
+      cells[2 * i + 1] = (byte) ((both >> 4) & PackedBoard.WIRES);
+    }
+    if (cells.length % 2 != 0) {
+      cells[cells.length - 1] = (byte) (in.get(position + pairs) & PackedBoard.WIRES);
+    }
+  }
+
+  //reads the scrambled board of the puzzle starting at the given position
+  //into a board of the same size, with the station placed on it
+  //EFFECT: replaces the board's cells and recounts its links
+  static void read(ByteBuffer in, int position, PackedBoard board) {
+    if (in.getInt(position) != board.width || in.getInt(position + 4) != board.height) {
+      throw new IllegalArgumentException("the puzzle is not the size of the board");
+    }
+    unpack(in, position + HEADER, board.cells);
+    board.cells[board.index(in.getInt(position + 8), in.getInt(position + 12))] |=
+        PackedBoard.STATION;
+    board.recount();
+  }
+
+  //returns a new board holding the scrambled board of the puzzle at the given position
+  static PackedBoard read(ByteBuffer in, int position) {
+    PackedBoard board = new PackedBoard(in.getInt(position), in.getInt(position + 4));
+    read(in, position, board);
+    return board;
+  }
+
+  //EFFECT: reads the solution wires of the puzzle at the given position into the array
+  static void readSolution(ByteBuffer in, int position, byte[] wires) {
+    unpack(in, position + HEADER + wireBytes(in.getInt(position), in.getInt(position + 4)),
+        wires);
+  }
+}
+
+//represents the writing of a corpus file: a header of a magic number, the
+//number of puzzles and where the index starts, then the puzzles one after
+//another, then the index of where each puzzle starts
+class CorpusWriter {
+  static final int MAGIC = 0x4C454131;
+  static final int HEADER = 4 + 4 + 8;
+
+  // the size of the buffer puzzles are gathered in before being written
+  static final int BUFFER = 1 << 20;
+
+  FileChannel channel;
+  // where each puzzle written so far starts, and how many there are
+  long[] offsets;
+  int count;
+  // puzzles not yet written to the file, which start where the file ends
+  ByteBuffer buffer;
+  long flushed;
+  // the end of the last puzzle added
+  long end;
+
+  CorpusWriter(Path path) {
+    try {
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.offsets = new long[16];
+    this.count = 0;
+    this.buffer = ByteBuffer.allocate(BUFFER);
+    this.flushed = HEADER;
+    this.end = HEADER;
+  }
+
+  //adds the engine's puzzle as it stands, with its solution
+  //EFFECT: buffers the puzzle, or writes it if it is larger than the buffer,
+  //        and notes where it starts
+  void add(PuzzleEngine engine, long seed) {
+    PackedBoard board = engine.board;
+    int size = PuzzleFormat.size(board.width, board.height);
+    if (size > this.buffer.remaining()) {
+      this.flush();
+    }
+    ByteBuffer out = size > BUFFER ? ByteBuffer.allocate(size) : this.buffer;
+    PuzzleFormat.write(out, board, engine.solution(), engine.powerRow, engine.powerCol, seed);
+    if (out != this.buffer) {
+      out.flip();
+      this.flushed += this.write(out, this.flushed);
+    }
+    if (this.count == this.offsets.length) {
+      this.offsets = Arrays.copyOf(this.offsets, 2 * this.count);
+    }
+    this.offsets[this.count] = this.end;
+    this.count += 1;
+    this.end += size;
+  }
+
+  //EFFECT: writes the buffered puzzles to the file and empties the buffer
+  void flush() {
+    this.buffer.flip();
+    this.flushed += this.write(this.buffer, this.flushed);
+    this.buffer.clear();
+  }
+
+  //writes the index after the last puzzle, then the header
+  //EFFECT: finishes and closes the file
+  void close() {
+    this.flush();
+    ByteBuffer index = ByteBuffer.allocate(8 * this.count);
+    for (int i = 0; i < this.count; i++) {
+      index.putLong(this.offsets[i]);
+    }
+    index.flip();
+    this.write(index, this.end);
+    ByteBuffer header = ByteBuffer.allocate(HEADER);
+    header.putInt(MAGIC).putInt(this.count).putLong(this.end);
+    header.flip();
+    this.write(header, 0);
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //returns the number of bytes of the buffer written at the given place in the file
+  //EFFECT: writes all of the buffer's remaining bytes
+  int write(ByteBuffer buffer, long position) {
+    int written = 0;
+    try {
+      while (buffer.hasRemaining()) {
+        written += this.channel.write(buffer, position + written);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return written;
+  }
+}
+
+//represents a corpus file mapped into memory, from which any puzzle is read
+//straight out of the mapping; puzzles can be read from many threads at once
+class Corpus {
+  // mappings of at most this many bytes each, so files past 2GB can be read
+  static final long CHUNK = 1L << 30;
+
+  FileChannel channel;
+  int count;
+  // where each puzzle starts in the file
+  ByteBuffer index;
+  // the file in chunks of CHUNK bytes, each mapped with enough extra
+  // to hold a whole puzzle starting inside it
+  MappedByteBuffer[] chunks;
+
+  Corpus(Path path) {
+    try {
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      long length = this.channel.size();
+      ByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          CorpusWriter.HEADER);
+      if (header.getInt(0) != CorpusWriter.MAGIC) {
+        throw new IllegalArgumentException("not a puzzle corpus: " + path);
+      }
+      this.count = header.getInt(4);
+      long indexStart = header.getLong(8);
+      this.index = this.channel.map(FileChannel.MapMode.READ_ONLY, indexStart, 8L * this.count);
+      this.chunks = new MappedByteBuffer[(int) ((indexStart + CHUNK - 1) / CHUNK)];
+      long largest = this.largest(indexStart);
+      for (int i = 0; i < this.chunks.length; i++) {
+        long start = i * CHUNK;
+        this.chunks[i] = this.channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(CHUNK + largest, length - start));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //returns the size in bytes of the largest puzzle in the corpus,
+  //given where the last one ends
+  long largest(long end) {
+    long largest = 0;
+    for (int i = 0; i < this.count; i++) {
+      long next = i + 1 < this.count ? this.index.getLong(8 * (i + 1)) : end;
+      largest = Math.max(largest, next - this.index.getLong(8 * i));
+    }
+    return largest;
+  }
+
+  //returns the mapping holding the puzzle with the given number
+  ByteBuffer chunk(int puzzle) {
+    return this.chunks[(int) (this.index.getLong(8 * puzzle) / CHUNK)];
+  }
+
+  //returns where the puzzle with the given number starts in its mapping
+  int position(int puzzle) {
+    return (int) (this.index.getLong(8 * puzzle) % CHUNK);
+  }
+
+  //returns a new board holding the scrambled puzzle with the given number
+  PackedBoard load(int puzzle) {
+    return PuzzleFormat.read(this.chunk(puzzle), this.position(puzzle));
+  }
+
+  //EFFECT: replaces the board's cells with the scrambled puzzle with the given
+  //        number, which must be the same size
+  void load(int puzzle, PackedBoard board) {
+    PuzzleFormat.read(this.chunk(puzzle), this.position(puzzle), board);
+  }
+
+  //EFFECT: reads the solution wires of the puzzle with the given number into the array
+  void solution(int puzzle, byte[] wires) {
+    PuzzleFormat.readSolution(this.chunk(puzzle), this.position(puzzle), wires);
+  }
+
+  //returns the seed the puzzle with the given number was generated from
+  long seed(int puzzle) {
+    return this.chunk(puzzle).getLong(this.position(puzzle) + 16);
+  }
+
+  //EFFECT: closes the file; the mappings stay readable until collected
+  void close() {
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+//examples class for testing
+class ExamplesPuzzleFormat {
+  PuzzleEngine engine;
+  PuzzleEngine other;
+  Path path;
+
+  //initialises a generated 5x3 puzzle, a generated 4x4 puzzle with the
+  //station moved, and a file to write a corpus to
+  void initData() {
+    this.engine = new PuzzleEngine(5, 3, new Random(6));
+    this.engine.generate();
+    this.other = new PuzzleEngine(4, 4, new Random(7));
+    this.other.powerRow = 2;
+    this.other.powerCol = 1;
+    this.other.generate();
+    try {
+      this.path = Files.createTempFile("corpus", ".bin");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.path.toFile().deleteOnExit();
+  }
+
+  //test for wireBytes and size
+  void testSize(Tester t) {
+    t.checkExpect(PuzzleFormat.wireBytes(5, 3), 8);
+    t.checkExpect(PuzzleFormat.wireBytes(4, 4), 8);
+    t.checkExpect(PuzzleFormat.size(5, 3), 40);
+  }
+
+  //test for pack and unpack
+  void testPack(Tester t) {
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    // bits other than the wires are not written, from the first or second of a pair
+    PuzzleFormat.pack(buffer, new byte[] {1, 2 | PackedBoard.STATION | PackedBoard.POWERED,
+        4 | PackedBoard.STATION, 8 | PackedBoard.POWERED, 15});
+    t.checkExpect(buffer.position(), 3);
+    t.checkExpect(buffer.array(), new byte[] {0x21, (byte) 0x84, 0x0F, 0});
+    byte[] cells = new byte[] {PackedBoard.POWERED, 0, 0, 0, 0};
+    PuzzleFormat.unpack(buffer, 0, cells);
+    t.checkExpect(cells, new byte[] {1, 2, 4, 8, 15});
+    t.checkExpect(buffer.position(), 3);
+    byte[] odd = new byte[3];
+    PuzzleFormat.unpack(buffer, 1, odd);
+    t.checkExpect(odd, new byte[] {4, 8, 15});
+  }
+
+  //test for write, both reads and readSolution
+  void testWrite(Tester t) {
+    this.initData();
+    ByteBuffer buffer = ByteBuffer.allocate(2 + PuzzleFormat.size(4, 4));
+    buffer.position(2);
+    PuzzleFormat.write(buffer, this.other.board, this.other.solution(), 2, 1, 99);
+    t.checkExpect(buffer.position(), buffer.capacity());
+    t.checkExpect(buffer.getLong(2 + 16), 99L);
+    PackedBoard board = PuzzleFormat.read(buffer, 2);
+    t.checkExpect(board.width, 4);
+    for (int i = 0; i < 16; i++) {
+      t.checkExpect(board.wires(i), this.other.board.wires(i));
+    }
+    t.checkExpect(board.has(board.index(2, 1), PackedBoard.STATION), true);
+    t.checkExpect(board.has(0, PackedBoard.STATION), false);
+    t.checkExpect(board.matched, this.other.board.matched);
+    t.checkExpect(board.dangling, this.other.board.dangling);
+    PackedBoard reused = new PackedBoard(4, 4);
+    reused.cells[0] = PackedBoard.STATION | PackedBoard.POWERED;
+    PuzzleFormat.read(buffer, 2, reused);
+    t.checkExpect(reused.cells, board.cells);
+    byte[] solution = new byte[16];
+    PuzzleFormat.readSolution(buffer, 2, solution);
+    t.checkExpect(solution, this.other.solution());
+  }
+
+  //test for CorpusWriter's add, flush, close and write
+  void testCorpusWriter(Tester t) {
+    this.initData();
+    CorpusWriter writer = new CorpusWriter(this.path);
+    writer.add(this.engine, 5);
+    writer.add(this.other, 6);
+    t.checkExpect(writer.count, 2);
+    t.checkExpect(writer.offsets[1], 16L + 40);
+    t.checkExpect(writer.flushed, 16L);
+    writer.flush();
+    t.checkExpect(writer.flushed, 16L + 40 + 40);
+    writer.add(this.engine, 7);
+    writer.close();
+    try {
+      ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(this.path));
+      t.checkExpect(file.capacity(), 16 + 3 * 40 + 3 * 8);
+      t.checkExpect(file.getInt(0), CorpusWriter.MAGIC);
+      t.checkExpect(file.getInt(4), 3);
+      t.checkExpect(file.getLong(8), 16L + 3 * 40);
+      t.checkExpect(file.getLong(16 + 3 * 40 + 16), 16L + 2 * 40);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //test for Corpus
+  void testCorpus(Tester t) {
+    this.initData();
+    CorpusWriter writer = new CorpusWriter(this.path);
+    for (int i = 0; i < 3; i++) {
+      writer.add(this.engine, 10 + i);
+      writer.add(this.other, 20 + i);
+    }
+    writer.close();
+    Corpus corpus = new Corpus(this.path);
+    t.checkExpect(corpus.count, 6);
+    t.checkExpect(corpus.chunks.length, 1);
+    t.checkExpect(corpus.largest(16 + 6 * 40), 40L);
+    t.checkExpect(corpus.position(3), 16 + 3 * 40);
+    t.checkExpect(corpus.seed(3), 21L);
+    t.checkExpect(corpus.seed(4), 12L);
+    PackedBoard board = corpus.load(4);
+    for (int i = 0; i < 15; i++) {
+      t.checkExpect(board.wires(i), this.engine.board.wires(i));
+    }
+    PackedBoard reused = new PackedBoard(4, 4);
+    corpus.load(5, reused);
+    t.checkExpect(reused.has(reused.index(2, 1), PackedBoard.STATION), true);
+    t.checkExpect(reused.matched, this.other.board.matched);
+    byte[] solution = new byte[16];
+    corpus.solution(1, solution);
+    t.checkExpect(solution, this.other.solution());
+    corpus.close();
+  }
+}
@@ -0,0 +1,1023 @@
+import tester.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//represents a solver that finds a way to turn every tile of a board so
+//its wires form a single tree, by propagating the constraints between
+//neighbouring tiles and branching in parallel when propagation stalls
+class PuzzleSolver {
+  // the wires every rotation in a domain has, and the wires at least one has,
+  // indexed by a tile's wires times 16 plus the domain
+  static final byte[] MUST = PuzzleSolver.wireTable(true);
+  static final byte[] MAY = PuzzleSolver.wireTable(false);
+  // the failed rotations a search allows itself before starting again
+  static final int RESTART_FAILS = 1000;
+
+  PackedBoard board;
+  // the wires of each tile when the solver was made
+  byte[] wires;
+  // set once any task finds a solution, so the others can stop
+  volatile boolean done;
+
+  PuzzleSolver(PackedBoard board) {
+    this.board = board;
+    this.wires = new byte[board.cells.length];
+    for (int i = 0; i < this.wires.length; i++) {
+      this.wires[i] = (byte) board.wires(i);
+    }
+    this.done = false;
+  }
+
+  //returns the table of the wires that all (or some) of the rotations
+  //in each domain of each set of wires have
+  static byte[] wireTable(boolean all) {
+    byte[] table = new byte[256];
+    for (int key = 0; key < 256; key++) {
+      int bits = all ? PackedBoard.WIRES : 0;
+      for (int r = 0; r < 4; r++) {
+        if ((key & (1 << r)) != 0) {
+          int turned = PackedBoard.rotateWires(key >> 4, r);
+          bits = all ? (bits & turned) : (bits | turned);
+        }
+      }
+      table[key] = (byte) bits;
+    }
+    return table;
+  }
+
+  //returns the wires of every tile in a solution of the board,
+  //or null if no way of turning the tiles lights the whole board
+  byte[] solve(ForkJoinPool pool) {
+    this.done = false;
+    return pool.invoke(new SolveTask(this, this.start(), 0));
+  }
+
+  //returns the search state before anything is known: every tile may
+  //take each of its distinct rotations, and needs to be looked at
+  SolverState start() {
+    SolverState state = new SolverState(this.wires.length);
+    for (int i = 0; i < this.wires.length; i++) {
+      int seen = 0;
+      for (int r = 0; r < 4; r++) {
+        int turned = PackedBoard.rotateWires(this.wires[i], r);
+        if ((seen & (1 << turned)) == 0) {
+          seen |= 1 << turned;
+          state.domain[i] |= 1 << r;
+        }
+      }
+      state.enqueue(i);
+    }
+    return state;
+  }
+
+  //returns the wires every rotation in the domain of a tile has
+  int must(int tile, int domain) {
+    return MUST[(this.wires[tile] << 4) | domain];
+  }
+
+  //returns the wires at least one rotation in the domain of a tile has
+  int may(int tile, int domain) {
+    return MAY[(this.wires[tile] << 4) | domain];
+  }
+
+  //returns the rotations in the domain of a tile that agree with its
+  //neighbours: no wire off the board, a wire exactly where every rotation
+  //of the neighbour has one, no two dead ends joined to each other,
+  //and no loop closed through the tiles linked so far
+  int allowed(SolverState state, int tile) {
+    int domain = state.domain[tile];
+    int result = 0;
+    for (int r = 0; r < 4; r++) {
+      if ((domain & (1 << r)) != 0) {
+        int turned = PackedBoard.rotateWires(this.wires[tile], r);
+        boolean ok = true;
+        for (int dir = 1; dir <= PackedBoard.BOTTOM && ok; dir <<= 1) {
+          int other = this.board.neighbour(tile, dir);
+          boolean wire = (turned & dir) != 0;
+          if (other < 0) {
+            ok = !wire;
+          } else {
+            int back = PackedBoard.opposite(dir);
+            int otherDomain = state.domain[other];
+            if (wire) {
+              ok = (this.may(other, otherDomain) & back) != 0
+                  && !(Integer.bitCount(this.wires[tile]) == 1
+                      && Integer.bitCount(this.wires[other]) == 1
+                      && this.wires.length > 2);
+            } else {
+              ok = (this.must(other, otherDomain) & back) == 0;
+            }
+          }
+        }
+        if (ok && !this.closesLoop(state, tile, turned)) {
+          result |= 1 << r;
+        }
+      }
+    }
+    return result;
+  }
+
+  //determines if giving a tile the given wires would link it to a group
+  //it is already in, or to two tiles that are already in one group
+  boolean closesLoop(SolverState state, int tile, int turned) {
+    int open = turned & ~state.linked[tile];
+    if (open == 0) {
+      return false;
+    }
+    int[] roots = state.roots;
+    roots[0] = state.find(tile);
+    int count = 1;
+    for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+      if ((open & dir) != 0) {
+        int root = state.find(this.board.neighbour(tile, dir));
+        for (int i = 0; i < count; i++) {
+          if (roots[i] == root) {
+            return true;
+          }
+        }
+        roots[count] = root;
+        count += 1;
+      }
+    }
+    return false;
+  }
+
+  //narrows the domains of the queued tiles until nothing changes,
+  //returning false if some tile is left with no rotation, or the wires
+  //fixed so far close a loop or close off a group of tiles
+  //EFFECT: updates the state, recording every change on its trail
+  boolean propagate(SolverState state) {
+    for (int i = 0; i < state.changedCount; i++) {
+      state.listed[state.changed[i]] = false;
+    }
+    state.changedCount = 0;
+    while (state.count > 0) {
+      int tile = state.dequeue();
+      int domain = state.domain[tile];
+      int next = this.allowed(state, tile);
+      if (next == 0) {
+        state.clearQueue();
+        return false;
+      }
+      int must = this.must(tile, next);
+      int fresh = must & ~state.fixed[tile];
+      if (next != domain || fresh != 0) {
+        state.update(tile, next, state.fixed[tile] | fresh, state.linked[tile]);
+        if (!state.listed[tile]) {
+          state.listed[tile] = true;
+          state.changed[state.changedCount] = tile;
+          state.changedCount += 1;
+        }
+      }
+      int changed = (this.must(tile, domain) ^ must)
+          | (this.may(tile, domain) ^ this.may(tile, next));
+      for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        int other = this.board.neighbour(tile, dir);
+        int back = PackedBoard.opposite(dir);
+        if (other >= 0 && (fresh & dir) != 0 && (state.fixed[other] & back) != 0) {
+          boolean smaller = state.size[state.find(tile)] <= state.size[state.find(other)];
+          this.queueBorder(state, smaller ? tile : other);
+          if (!state.union(tile, other)) {
+            state.clearQueue();
+            return false;
+          }
+          state.update(tile, next, state.fixed[tile], state.linked[tile] | dir);
+          state.update(other, state.domain[other], state.fixed[other], state.linked[other] | back);
+        }
+        if (other >= 0 && (changed & dir) != 0) {
+          state.enqueue(other);
+        }
+      }
+    }
+    int first = state.stamp + 1;
+    for (int i = 0; i < state.changedCount; i++) {
+      if (this.closedOff(state, state.changed[i], first)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  //queues every tile next to the group of linked tiles the given tile is in,
+  //since joining the group to another can rule out rotations of any of them
+  //EFFECT: updates the queue and marks the group with a new stamp
+  void queueBorder(SolverState state, int tile) {
+    state.stamp += 1;
+    state.seen[tile] = state.stamp;
+    state.group[0] = tile;
+    int size = 1;
+    for (int i = 0; i < size; i++) {
+      int member = state.group[i];
+      for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        int other = this.board.neighbour(member, dir);
+        if (other >= 0 && (state.linked[member] & dir) != 0) {
+          if (state.seen[other] != state.stamp) {
+            state.seen[other] = state.stamp;
+            state.group[size] = other;
+            size += 1;
+          }
+        } else if (other >= 0 && Integer.bitCount(state.domain[other]) > 1) {
+          state.enqueue(other);
+        }
+      }
+    }
+  }
+
+  //determines if the tile is in a group of linked tiles, short of the whole
+  //board, with no wire left that could link it to anything else; groups
+  //marked with a stamp from the given one on are already known to be open
+  //EFFECT: marks the tiles looked at with a new stamp
+  boolean closedOff(SolverState state, int tile, int first) {
+    if (state.seen[tile] >= first) {
+      return false;
+    }
+    state.stamp += 1;
+    state.seen[tile] = state.stamp;
+    state.group[0] = tile;
+    int size = 1;
+    for (int i = 0; i < size; i++) {
+      int member = state.group[i];
+      if ((this.may(member, state.domain[member]) & ~state.linked[member]) != 0) {
+        return false;
+      }
+      for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        if ((state.linked[member] & dir) != 0) {
+          int other = this.board.neighbour(member, dir);
+          if (state.seen[other] >= first && state.seen[other] != state.stamp) {
+            return false;
+          }
+          if (state.seen[other] != state.stamp) {
+            state.seen[other] = state.stamp;
+            state.group[size] = other;
+            size += 1;
+          }
+        }
+      }
+    }
+    return size < this.wires.length;
+  }
+
+  //returns the undecided tile with the fewest rotations left among the tiles
+  //the last propagation changed and their neighbours, so the search finishes
+  //one region before moving on, or -1 if there is none
+  int branchTile(SolverState state) {
+    int best = -1;
+    int fewest = 5;
+    for (int i = 0; i < state.changedCount && fewest > 2; i++) {
+      int tile = state.changed[i];
+      int left = Integer.bitCount(state.domain[tile]);
+      if (left > 1 && left < fewest) {
+        best = tile;
+        fewest = left;
+      }
+      for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        int other = this.board.neighbour(tile, dir);
+        if (other >= 0) {
+          left = Integer.bitCount(state.domain[other]);
+          if (left > 1 && left < fewest) {
+            best = other;
+            fewest = left;
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  //returns the tile with the fewest rotations left in the region of undecided
+  //tiles joined to the given undecided one
+  //EFFECT: marks the tiles looked at with a new stamp
+  int regionTile(SolverState state, int tile) {
+    state.stamp += 1;
+    state.seen[tile] = state.stamp;
+    state.group[0] = tile;
+    int size = 1;
+    int best = tile;
+    int fewest = Integer.bitCount(state.domain[tile]);
+    for (int i = 0; i < size && fewest > 2; i++) {
+      int member = state.group[i];
+      for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        int other = this.board.neighbour(member, dir);
+        int left = other < 0 ? 1 : Integer.bitCount(state.domain[other]);
+        if (left > 1 && state.seen[other] != state.stamp) {
+          state.seen[other] = state.stamp;
+          state.group[size] = other;
+          size += 1;
+          if (left < fewest) {
+            best = other;
+            fewest = left;
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  //returns the first undecided tile at or after the cursor,
+  //or -1 if every tile from there on is decided
+  int nextUndecided(SolverState state, int cursor) {
+    for (int i = cursor; i < state.domain.length; i++) {
+      if (Integer.bitCount(state.domain[i]) > 1) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  //narrows the domain of a tile to one rotation
+  //EFFECT: updates the state and queues the tile and its neighbours
+  void decide(SolverState state, int tile, int rotation) {
+    state.update(tile, 1 << rotation, state.fixed[tile], state.linked[tile]);
+    state.enqueue(tile);
+    for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+      int other = this.board.neighbour(tile, dir);
+      if (other >= 0) {
+        state.enqueue(other);
+      }
+    }
+  }
+
+  //searches below a propagated state by backtracking, trying each rotation
+  //of one undecided tile at a time and undoing it when it fails. A tile that
+  //ran out of rotations is branched on first until it takes one again, so a
+  //failure caused by the choice just before it is found without trying every
+  //combination of the regions decided in between. When a culprit lies further
+  //back, the search gives up after RESTART_FAILS failed rotations, twice as
+  //many each time, and starts again from the state it was given, deciding
+  //the tiles that failed most first. While the pool has idle workers, the
+  //other rotations of a new branch are forked off as tasks of their own, at
+  //any depth; returns the wires of a solution, or null if there is none below
+  //the state
+  //EFFECT: leaves the state as it was when called, unless a solution is found
+  byte[] search(SolverState state, int cursor) {
+    // the tile, untried rotations, cursor and trail size of each branch
+    int[] tiles = new int[16];
+    int[] options = new int[16];
+    int[] cursors = new int[16];
+    int[] marks = new int[16];
+    ArrayList<SolveTask> forked = new ArrayList<SolveTask>();
+    // the tile that last ran out of rotations, until it takes one again
+    int conflict = -1;
+    // how often a rotation of each tile has failed, and the tiles that have,
+    // kept from one start to the next
+    int[] heat = new int[state.domain.length];
+    int[] hot = new int[16];
+    int hotCount = 0;
+    int root = state.trailSize;
+    int start = cursor;
+    long budget = RESTART_FAILS;
+    long failed = 0;
+    int depth = 0;
+    boolean ok = true;
+    while (ok && !this.done) {
+      int tile = conflict;
+      if (tile < 0 || Integer.bitCount(state.domain[tile]) < 2) {
+        conflict = -1;
+        tile = this.branchTile(state);
+      }
+      if (tile < 0) {
+        tile = this.hottest(state, heat, hot, hotCount);
+        if (tile < 0) {
+          cursor = this.nextUndecided(state, cursor);
+          tile = cursor;
+        }
+        if (tile >= 0) {
+          tile = this.regionTile(state, tile);
+        }
+      }
+      if (tile < 0) {
+        if (state.sets == 1) {
+          this.done = true;
+          return this.solution(state);
+        }
+      } else {
+        if (depth == tiles.length) {
+          tiles = Arrays.copyOf(tiles, depth * 2);
+          options = Arrays.copyOf(options, depth * 2);
+          cursors = Arrays.copyOf(cursors, depth * 2);
+          marks = Arrays.copyOf(marks, depth * 2);
+        }
+        tiles[depth] = tile;
+        options[depth] = state.domain[tile];
+        cursors[depth] = cursor;
+        marks[depth] = state.trailSize;
+        if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getSurplusQueuedTaskCount() <= 0) {
+          options[depth] = this.forkRest(state, tile, cursor, forked);
+        }
+        depth += 1;
+      }
+      // tries the next rotation of the innermost branch with any left
+      ok = false;
+      while (!ok && depth > 0) {
+        int top = depth - 1;
+        state.undo(marks[top]);
+        if (options[top] == 0) {
+          if (conflict < 0) {
+            conflict = tiles[top];
+          }
+          depth -= 1;
+        } else {
+          int rotation = Integer.numberOfTrailingZeros(options[top]);
+          options[top] &= options[top] - 1;
+          cursor = cursors[top];
+          this.decide(state, tiles[top], rotation);
+          ok = this.propagate(state);
+          if (ok && tiles[top] == conflict) {
+            conflict = -1;
+          } else if (!ok) {
+            failed += 1;
+            if (heat[tiles[top]] == 0) {
+              if (hotCount == hot.length) {
+                hot = Arrays.copyOf(hot, hotCount * 2);
+              }
+              hot[hotCount] = tiles[top];
+              hotCount += 1;
+            }
+            heat[tiles[top]] += 1;
+          }
+        }
+      }
+      if (ok && failed > budget) {
+        state.undo(root);
+        depth = 0;
+        cursor = start;
+        conflict = -1;
+        failed = 0;
+        budget *= 2;
+      }
+    }
+    for (SolveTask task : forked) {
+      byte[] found = task.join();
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+
+  //returns the undecided tile a rotation of which has failed most often,
+  //or -1 if every tile that has failed is now decided
+  int hottest(SolverState state, int[] heat, int[] hot, int hotCount) {
+    int best = -1;
+    for (int i = 0; i < hotCount; i++) {
+      int tile = hot[i];
+      if (Integer.bitCount(state.domain[tile]) > 1 && (best < 0 || heat[tile] > heat[best])) {
+        best = tile;
+      }
+    }
+    return best;
+  }
+
+  //forks a task for every rotation of the tile but the first, each searching
+  //a copy of the state with the tile turned that way; returns the first
+  //rotation, which is left to the caller
+  //EFFECT: adds the tasks to the given list
+  int forkRest(SolverState state, int tile, int cursor, ArrayList<SolveTask> forked) {
+    int domain = state.domain[tile];
+    int first = domain & -domain;
+    for (int rest = domain & ~first; rest != 0; rest &= rest - 1) {
+      SolverState branch = state.copy();
+      this.decide(branch, tile, Integer.numberOfTrailingZeros(rest));
+      SolveTask task = new SolveTask(this, branch, cursor);
+      task.fork();
+      forked.add(task);
+    }
+    return first;
+  }
+
+  //returns the wires of every tile in the decided state
+  byte[] solution(SolverState state) {
+    byte[] result = new byte[this.wires.length];
+    for (int i = 0; i < result.length; i++) {
+      int r = Integer.numberOfTrailingZeros(state.domain[i]);
+      result[i] = (byte) PackedBoard.rotateWires(this.wires[i], r);
+    }
+    return result;
+  }
+
+  //returns the move that turns the first tile not yet matching the solution,
+  //or -1 if the board already matches it
+  int hint(byte[] solution) {
+    for (int i = 0; i < solution.length; i++) {
+      if (this.board.wires(i) != solution[i]) {
+        return PuzzleEngine.rotateMove(i);
+      }
+    }
+    return -1;
+  }
+}
+
+//represents what a search of the solver knows so far: the rotations each
+//tile may still take, the wires fixed and linked on each tile, and the
+//groups of linked tiles, with a trail of changes so they can be undone
+class SolverState {
+  // the rotations each tile may take, as a bit per number of clockwise turns
+  byte[] domain;
+  // the wires every remaining rotation of each tile has
+  byte[] fixed;
+  // the fixed wires that meet a fixed wire of the neighbour
+  byte[] linked;
+  // the groups of linked tiles, as a union-find without path compression
+  // so that unions can be undone
+  int[] parent;
+  byte[] rank;
+  int[] size;
+  int sets;
+  // the changes made so far, newest last: a tile with its old domain,
+  // fixed and linked wires, or a root that was joined to another
+  long[] trail;
+  int trailSize;
+  // the tiles whose neighbours changed, in a ring, and whether each is in it
+  int[] queue;
+  boolean[] queued;
+  int head;
+  int count;
+  // the tiles the last propagation changed, and whether each is listed
+  int[] changed;
+  boolean[] listed;
+  int changedCount;
+  // the tiles looked at by each walk over a group of linked tiles
+  // are marked with a stamp that goes up with every walk
+  int[] seen;
+  int stamp;
+  int[] group;
+  // the groups the wires of a tile would join, while closesLoop checks them
+  int[] roots;
+
+  SolverState(int size) {
+    this.domain = new byte[size];
+    this.fixed = new byte[size];
+    this.linked = new byte[size];
+    this.parent = new int[size];
+    this.rank = new byte[size];
+    this.size = new int[size];
+    for (int i = 0; i < size; i++) {
+      this.parent[i] = i;
+      this.size[i] = 1;
+    }
+    this.sets = size;
+    this.trail = new long[64];
+    this.trailSize = 0;
+    this.queue = new int[size];
+    this.queued = new boolean[size];
+    this.head = 0;
+    this.count = 0;
+    this.changed = new int[size];
+    this.listed = new boolean[size];
+    this.changedCount = 0;
+    this.seen = new int[size];
+    this.stamp = 0;
+    this.group = new int[size];
+    this.roots = new int[5];
+  }
+
+  //returns a copy of this state that can be searched separately,
+  //with an empty queue and trail
+  SolverState copy() {
+    SolverState result = new SolverState(this.domain.length);
+    result.domain = this.domain.clone();
+    result.fixed = this.fixed.clone();
+    result.linked = this.linked.clone();
+    result.parent = this.parent.clone();
+    result.rank = this.rank.clone();
+    result.size = this.size.clone();
+    result.sets = this.sets;
+    return result;
+  }
+
+  //EFFECT: adds a change to the trail, growing it if needed
+  void record(long change) {
+    if (this.trailSize == this.trail.length) {
+      this.trail = Arrays.copyOf(this.trail, this.trailSize * 2);
+    }
+    this.trail[this.trailSize] = change;
+    this.trailSize += 1;
+  }
+
+  //EFFECT: sets the domain, fixed and linked wires of a tile,
+  //        recording the old ones on the trail
+  void update(int tile, int domain, int fixed, int linked) {
+    this.record(((long) tile << 13) | (this.domain[tile] << 9)
+        | (this.fixed[tile] << 5) | (this.linked[tile] << 1));
+    this.domain[tile] = (byte) domain;
+    this.fixed[tile] = (byte) fixed;
+    this.linked[tile] = (byte) linked;
+  }
+
+  //returns the representative of the group of a tile
+  int find(int tile) {
+    while (this.parent[tile] != tile) {
+      tile = this.parent[tile];
+    }
+    return tile;
+  }
+
+  //joins the groups of two tiles, returning false if they were already one
+  //EFFECT: hangs one root under the other, recording it on the trail
+  boolean union(int x, int y) {
+    int xRep = this.find(x);
+    int yRep = this.find(y);
+    if (xRep == yRep) {
+      return false;
+    }
+    if (this.rank[xRep] < this.rank[yRep]) {
+      int swap = xRep;
+      xRep = yRep;
+      yRep = swap;
+    }
+    boolean grows = this.rank[xRep] == this.rank[yRep];
+    this.parent[yRep] = xRep;
+    this.size[xRep] += this.size[yRep];
+    if (grows) {
+      this.rank[xRep] += 1;
+    }
+    this.sets -= 1;
+    this.record(((long) yRep << 2) | (grows ? 2 : 0) | 1);
+    return true;
+  }
+
+  //takes back every change made since the trail had the given size
+  //EFFECT: restores the state and empties the queue
+  void undo(int mark) {
+    while (this.trailSize > mark) {
+      this.trailSize -= 1;
+      long change = this.trail[this.trailSize];
+      if ((change & 1) == 0) {
+        int tile = (int) (change >> 13);
+        this.domain[tile] = (byte) ((change >> 9) & 15);
+        this.fixed[tile] = (byte) ((change >> 5) & 15);
+        this.linked[tile] = (byte) ((change >> 1) & 15);
+      } else {
+        int root = (int) (change >> 2);
+        int above = this.parent[root];
+        if ((change & 2) != 0) {
+          this.rank[above] -= 1;
+        }
+        this.size[above] -= this.size[root];
+        this.parent[root] = root;
+        this.sets += 1;
+      }
+    }
+    this.clearQueue();
+  }
+
+  //EFFECT: adds the tile to the queue unless it is already there
+  void enqueue(int tile) {
+    if (!this.queued[tile]) {
+      this.queued[tile] = true;
+      this.queue[(this.head + this.count) % this.queue.length] = tile;
+      this.count += 1;
+    }
+  }
+
+  //removes and returns the tile at the front of the queue
+  //EFFECT: updates head and count
+  int dequeue() {
+    int tile = this.queue[this.head];
+    this.queued[tile] = false;
+    this.head = (this.head + 1) % this.queue.length;
+    this.count -= 1;
+    return tile;
+  }
+
+  //EFFECT: empties the queue
+  void clearQueue() {
+    while (this.count > 0) {
+      this.dequeue();
+    }
+  }
+}
+
+//represents the search below one state of the solver, run as a task so
+//that searches can fork off branches to idle workers
+class SolveTask extends RecursiveTask<byte[]> {
+  static final long serialVersionUID = 1L;
+
+  PuzzleSolver solver;
+  SolverState state;
+  // every tile before this one is decided
+  int cursor;
+
+  SolveTask(PuzzleSolver solver, SolverState state, int cursor) {
+    this.solver = solver;
+    this.state = state;
+    this.cursor = cursor;
+  }
+
+  //returns the wires of a solution below this state, or null if there is none
+  protected byte[] compute() {
+    if (this.solver.done || !this.solver.propagate(this.state)) {
+      return null;
+    }
+    return this.solver.search(this.state, this.cursor);
+  }
+}
+
+//examples class for testing
+class ExamplesPuzzleSolver {
+  PuzzleEngine engine;
+  PuzzleSolver solver;
+
+  //initialises a scrambled 3x3 puzzle and a solver for it
+  void initData() {
+    this.engine = new PuzzleEngine(3, 3, new Random(2));
+    this.engine.generate();
+    this.solver = new PuzzleSolver(this.engine.board);
+  }
+
+  //test for wireTable, must and may
+  void testMustMay(Tester t) {
+    this.initData();
+    t.checkExpect(PuzzleSolver.MUST[(PackedBoard.LEFT << 4) | 1], (byte) PackedBoard.LEFT);
+    t.checkExpect(PuzzleSolver.MAY[(PackedBoard.LEFT << 4) | 3],
+        (byte) (PackedBoard.LEFT | PackedBoard.TOP));
+    // tile 4 has three wires: right, top and bottom
+    t.checkExpect(this.solver.must(4, 1), PackedBoard.RIGHT | PackedBoard.TOP | PackedBoard.BOTTOM);
+    t.checkExpect(this.solver.must(4, 3), PackedBoard.RIGHT | PackedBoard.BOTTOM);
+    t.checkExpect(this.solver.may(4, 3), PackedBoard.WIRES);
+    t.checkExpect(this.solver.may(4, 0), 0);
+  }
+
+  //test for start
+  void testStart(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    // a dead end has four distinct rotations, a straight only two
+    t.checkExpect(state.domain[0], (byte) 15);
+    t.checkExpect(state.domain[7], (byte) 15);
+    PackedBoard line = new PackedBoard(1, 1);
+    line.set(0, PackedBoard.LEFT | PackedBoard.RIGHT);
+    t.checkExpect(new PuzzleSolver(line).start().domain[0], (byte) 3);
+    t.checkExpect(state.count, 9);
+  }
+
+  //test for allowed
+  void testAllowed(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    // the corner dead end can only point right or down
+    t.checkExpect(Integer.bitCount(this.solver.allowed(state, 0)), 2);
+    // the centre tile can take any rotation
+    t.checkExpect(this.solver.allowed(state, 4), 15);
+  }
+
+  //test for closesLoop
+  void testClosesLoop(Tester t) {
+    PackedBoard square = new PackedBoard(2, 2);
+    PuzzleSolver squareSolver = new PuzzleSolver(square);
+    SolverState state = new SolverState(4);
+    state.union(1, 3);
+    t.checkExpect(squareSolver.closesLoop(state, 0, PackedBoard.RIGHT), false);
+    t.checkExpect(squareSolver.closesLoop(state, 0, 0), false);
+    // tiles 1 and 3 are already one group
+    t.checkExpect(squareSolver.closesLoop(state, 2, PackedBoard.TOP | PackedBoard.RIGHT), false);
+    t.checkExpect(squareSolver.closesLoop(state, 0, PackedBoard.RIGHT | PackedBoard.BOTTOM), false);
+    state.union(0, 2);
+    state.linked[0] = PackedBoard.BOTTOM;
+    t.checkExpect(squareSolver.closesLoop(state, 0, PackedBoard.BOTTOM), false);
+    state.union(2, 3);
+    t.checkExpect(squareSolver.closesLoop(state, 0, PackedBoard.RIGHT | PackedBoard.BOTTOM), true);
+  }
+
+  //test for propagate
+  void testPropagate(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    t.checkExpect(this.solver.propagate(state), true);
+    t.checkExpect(state.count, 0);
+    t.checkExpect(Integer.bitCount(state.domain[2]), 1);
+    t.checkExpect(state.changedCount > 0, true);
+    SolverState broken = this.solver.start();
+    broken.domain[0] = 1;
+    t.checkExpect(this.solver.propagate(broken), false);
+    t.checkExpect(broken.count, 0);
+  }
+
+  //test for queueBorder
+  void testQueueBorder(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    state.clearQueue();
+    state.linked[0] = PackedBoard.RIGHT;
+    state.linked[1] = PackedBoard.LEFT;
+    state.domain[2] = 1;
+    this.solver.queueBorder(state, 1);
+    // tiles 3 and 4 are below the group; tile 2 is decided
+    t.checkExpect(state.count, 2);
+    t.checkExpect(state.queued[3] && state.queued[4], true);
+    t.checkExpect(state.seen[0], state.stamp);
+  }
+
+  //test for closedOff
+  void testClosedOff(Tester t) {
+    PackedBoard pair = new PackedBoard(3, 1);
+    pair.set(0, PackedBoard.RIGHT);
+    pair.set(1, PackedBoard.LEFT);
+    pair.set(2, PackedBoard.LEFT);
+    PuzzleSolver pairSolver = new PuzzleSolver(pair);
+    SolverState state = new SolverState(3);
+    state.domain[0] = 1;
+    state.domain[1] = 1;
+    state.domain[2] = 1;
+    state.linked[0] = PackedBoard.RIGHT;
+    state.linked[1] = PackedBoard.LEFT;
+    t.checkExpect(pairSolver.closedOff(state, 0, 1), true);
+    t.checkExpect(state.stamp, 1);
+    t.checkExpect(pairSolver.closedOff(state, 2, 2), false);
+    // groups looked at by an earlier check count as open
+    t.checkExpect(pairSolver.closedOff(state, 1, 1), false);
+  }
+
+  //test for branchTile and nextUndecided
+  void testBranchTile(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    t.checkExpect(this.solver.nextUndecided(state, 0), 0);
+    t.checkExpect(this.solver.nextUndecided(state, 3), 3);
+    t.checkExpect(this.solver.branchTile(state), -1);
+    state.domain[3] = 1;
+    state.changed[0] = 3;
+    state.changedCount = 1;
+    // neighbours of changed tiles come first, the ones with fewest rotations left
+    t.checkExpect(this.solver.branchTile(state), 0);
+    state.domain[6] = 5;
+    t.checkExpect(this.solver.branchTile(state), 6);
+    for (int i = 0; i < 9; i++) {
+      state.domain[i] = 2;
+    }
+    t.checkExpect(this.solver.branchTile(state), -1);
+    t.checkExpect(this.solver.nextUndecided(state, 0), -1);
+  }
+
+  //test for regionTile
+  void testRegionTile(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    // the middle column is decided, leaving a region down each side
+    state.domain[1] = 1;
+    state.domain[4] = 1;
+    state.domain[7] = 1;
+    state.domain[6] = 3;
+    state.domain[8] = 7;
+    t.checkExpect(this.solver.regionTile(state, 0), 6);
+    t.checkExpect(this.solver.regionTile(state, 2), 8);
+    t.checkExpect(this.solver.regionTile(state, 5), 8);
+    t.checkExpect(state.stamp, 3);
+    state.domain[2] = 1;
+    state.domain[5] = 1;
+    t.checkExpect(this.solver.regionTile(state, 8), 8);
+  }
+
+  //test for hottest
+  void testHottest(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    int[] heat = new int[9];
+    heat[4] = 3;
+    heat[2] = 5;
+    int[] hot = new int[] {4, 2};
+    t.checkExpect(this.solver.hottest(state, heat, hot, 0), -1);
+    t.checkExpect(this.solver.hottest(state, heat, hot, 2), 2);
+    state.domain[2] = 1;
+    t.checkExpect(this.solver.hottest(state, heat, hot, 2), 4);
+    state.domain[4] = 4;
+    t.checkExpect(this.solver.hottest(state, heat, hot, 2), -1);
+  }
+
+  //test for decide
+  void testDecide(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    this.solver.propagate(state);
+    this.solver.decide(state, 4, 2);
+    t.checkExpect(state.domain[4], (byte) 4);
+    t.checkExpect(state.count, 5);
+    t.checkExpect(state.trailSize > 0, true);
+  }
+
+  //test for search
+  void testSearch(Tester t) {
+    this.initData();
+    SolverState state = this.solver.start();
+    this.solver.propagate(state);
+    byte[] solution = this.solver.search(state, 0);
+    t.checkExpect(solution == null, false);
+    t.checkExpect(this.solver.done, true);
+    PackedBoard stuck = new PackedBoard(3, 1);
+    stuck.set(0, PackedBoard.RIGHT);
+    stuck.set(1, PackedBoard.LEFT | PackedBoard.RIGHT);
+    stuck.set(2, PackedBoard.LEFT | PackedBoard.RIGHT);
+    PuzzleSolver stuckSolver = new PuzzleSolver(stuck);
+    SolverState stuckState = stuckSolver.start();
+    stuckSolver.propagate(stuckState);
+    t.checkExpect(stuckSolver.search(stuckState, 0), null);
+  }
+
+  //test for solve and hint
+  void testSolve(Tester t) {
+    this.initData();
+    ForkJoinPool pool = new ForkJoinPool(2);
+    byte[] solution = this.solver.solve(pool);
+    t.checkExpect(solution == null, false);
+    t.checkExpect(this.solver.hint(solution) >= 0, true);
+    for (int move = this.solver.hint(solution); move >= 0; move = this.solver.hint(solution)) {
+      this.engine.play(move);
+    }
+    t.checkExpect(this.engine.isSolved(), true);
+    PuzzleEngine big = new PuzzleEngine(40, 30, new Random(5));
+    big.generate();
+    byte[] bigSolution = new PuzzleSolver(big.board).solve(pool);
+    for (int i = 0; i < bigSolution.length; i++) {
+      while (big.board.wires(i) != bigSolution[i]) {
+        big.rotate(i);
+      }
+    }
+    t.checkExpect(big.isSolved(), true);
+    // two dead ends side by side cannot light a bigger board
+    PackedBoard stuck = new PackedBoard(3, 1);
+    stuck.set(0, PackedBoard.RIGHT);
+    stuck.set(1, PackedBoard.LEFT);
+    stuck.set(2, PackedBoard.LEFT);
+    t.checkExpect(new PuzzleSolver(stuck).solve(pool), null);
+    pool.shutdown();
+  }
+
+  //test for solve on 500x500 puzzles whose searches once backtracked through
+  //unrelated regions for minutes: each must be solved within ten seconds
+  void testSolveLarge(Tester t) {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    for (int seed : new int[] {5, 8, 10, 12}) {
+      PuzzleEngine large = new PuzzleEngine(500, 500, new Random(seed));
+      large.generate();
+      PuzzleSolver largeSolver = new PuzzleSolver(large.board);
+      ForkJoinTask<byte[]> task = pool.submit(new SolveTask(largeSolver, largeSolver.start(), 0));
+      byte[] solution = null;
+      try {
+        solution = task.get(10, TimeUnit.SECONDS);
+      } catch (TimeoutException e) {
+        largeSolver.done = true;
+      } catch (InterruptedException | ExecutionException e) {
+        throw new IllegalStateException(e);
+      }
+      t.checkExpect(solution != null, true);
+      if (solution != null) {
+        byte[] cells = large.board.cells;
+        for (int i = 0; i < cells.length; i++) {
+          cells[i] = (byte) ((cells[i] & ~PackedBoard.WIRES) | solution[i]);
+        }
+        large.board.recount();
+        t.checkExpect(large.isSolved(), true);
+      }
+    }
+    pool.shutdown();
+  }
+
+  //test for SolverState's update, union and undo
+  void testTrail(Tester t) {
+    SolverState state = new SolverState(3);
+    state.domain[1] = 5;
+    int mark = state.trailSize;
+    state.update(1, 1, PackedBoard.LEFT, 0);
+    t.checkExpect(state.union(0, 1), true);
+    t.checkExpect(state.union(1, 0), false);
+    t.checkExpect(state.find(0) == state.find(1), true);
+    t.checkExpect(state.size[state.find(1)], 2);
+    t.checkExpect(state.sets, 2);
+    state.undo(mark);
+    t.checkExpect(state.domain[1], (byte) 5);
+    t.checkExpect(state.fixed[1], (byte) 0);
+    t.checkExpect(state.find(1), 1);
+    t.checkExpect(state.rank, new byte[3]);
+    t.checkExpect(state.size, new int[] {1, 1, 1});
+    t.checkExpect(state.sets, 3);
+  }
+
+  //test for SolverState's copy, enqueue, dequeue and clearQueue
+  void testQueue(Tester t) {
+    SolverState state = new SolverState(3);
+    state.enqueue(2);
+    state.enqueue(0);
+    state.enqueue(2);
+    t.checkExpect(state.count, 2);
+    t.checkExpect(state.dequeue(), 2);
+    state.domain[1] = 5;
+    state.union(0, 1);
+    SolverState copy = state.copy();
+    copy.domain[1] = 1;
+    t.checkExpect(state.domain[1], (byte) 5);
+    t.checkExpect(copy.count, 0);
+    t.checkExpect(copy.find(0) == copy.find(1), true);
+    copy.union(1, 2);
+    t.checkExpect(state.find(2), 2);
+    state.clearQueue();
+    t.checkExpect(state.count, 0);
+    t.checkExpect(state.queued, new boolean[3]);
+  }
+}
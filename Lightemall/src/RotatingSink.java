@@ -0,0 +1,44 @@
+import tester.*;
+import java.util.Random;
+
+//represents a sink that rotates every tile at random before passing its row
+//on, turning a solved board into a puzzle as it streams
+class RotatingSink implements RowSink {
+  RowSink next;
+  Random rand;
+
+  RotatingSink(RowSink next, Random rand) {
+    this.next = next;
+    this.rand = rand;
+  }
+
+  //EFFECT: rotates the wires of the row in place and passes it to the next sink
+  public void accept(int y, byte[] wires) {
+    for (int x = 0; x < wires.length; x++) {
+      wires[x] = (byte) PackedBoard.rotateWires(wires[x], this.rand.nextInt(4));
+    }
+    this.next.accept(y, wires);
+  }
+}
+
+//examples class for testing
+class ExamplesRotatingSink {
+  //test for RotatingSink's accept
+  void testRotatingSink(Tester t) {
+    PackedBoard solved = new PackedBoard(7, 5);
+    PackedBoard scrambled = new PackedBoard(7, 5);
+    new RowGenerator(7, 5, new Random(4)).generate(new BoardSink(solved));
+    new RowGenerator(7, 5, new Random(4))
+        .generate(new RotatingSink(new BoardSink(scrambled), new Random(5)));
+    boolean sameShapes = true;
+    for (int i = 0; i < 35; i++) {
+      int wires = scrambled.wires(i);
+      sameShapes = sameShapes && (wires == solved.wires(i)
+          || wires == PackedBoard.rotateWires(solved.wires(i), 1)
+          || wires == PackedBoard.rotateWires(solved.wires(i), 2)
+          || wires == PackedBoard.rotateWires(solved.wires(i), 3));
+    }
+    t.checkExpect(sameShapes, true);
+    t.checkExpect(scrambled.dangling > 0, true);
+  }
+}
@@ -0,0 +1,225 @@
+import tester.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+//represents Eller's algorithm: a random spanning tree of a board's grid built
+//one row at a time, remembering only which tiles of the current row are
+//already joined, so a board of any height is generated in memory of its width
+class RowGenerator {
+  int width;
+  int height;
+  Random rand;
+
+  RowGenerator(int width, int height, Random rand) {
+    this.width = width;
+    this.height = height;
+    this.rand = rand;
+  }
+
+  //generates the wires of a spanning tree row by row, handing each row to
+  //the sink as soon as its wires down are chosen
+  //EFFECT: calls the sink once per row, in order
+  void generate(RowSink sink) {
+    byte[] row = new byte[this.width];
+    byte[] below = new byte[this.width];
+    // which tiles of the row are joined through the rows above or within it
+    DisjointSet sets = new DisjointSet(this.width);
+    // the set of each tile, how many of its tiles are still to be passed,
+    // and the first tile of the next row joined to it
+    int[] label = new int[this.width];
+    int[] remaining = new int[this.width];
+    int[] first = new int[this.width];
+    for (int x = 0; x < this.width; x++) {
+      first[x] = -1;
+    }
+    for (int y = 0; y < this.height; y++) {
+      boolean last = y == this.height - 1;
+      this.joinAcross(row, sets, last);
+      if (!last) {
+        this.joinDown(row, below, sets, label, remaining, first);
+      }
+      sink.accept(y, row);
+      byte[] done = row;
+      row = below;
+      below = done;
+      for (int x = 0; x < this.width; x++) {
+        below[x] = 0;
+      }
+    }
+  }
+
+  //joins neighbouring tiles of the row that are in different sets, each at
+  //random, or all of them on the last row so the tree is finished
+  //EFFECT: updates the row's wires and sets
+  void joinAcross(byte[] row, DisjointSet sets, boolean last) {
+    for (int x = 0; x < this.width - 1; x++) {
+      if (!sets.connected(x, x + 1) && (last || this.rand.nextBoolean())) {
+        sets.union(x, x + 1);
+        row[x] |= PackedBoard.RIGHT;
+        row[x + 1] |= PackedBoard.LEFT;
+      }
+    }
+  }
+
+  //joins tiles of the row to the tiles below them at random, making sure every
+  //set goes down at least once, then carries the sets over to the next row
+  //EFFECT: updates the wires of both rows, and resets sets for the next row
+  void joinDown(byte[] row, byte[] below, DisjointSet sets, int[] label, int[] remaining,
+      int[] first) {
+    for (int x = 0; x < this.width; x++) {
+      label[x] = sets.find(x);
+      remaining[label[x]] += 1;
+    }
+    for (int x = 0; x < this.width; x++) {
+      int set = label[x];
+      remaining[set] -= 1;
+      if (this.rand.nextBoolean() || (remaining[set] == 0 && first[set] < 0)) {
+        row[x] |= PackedBoard.BOTTOM;
+        below[x] = PackedBoard.TOP;
+        if (first[set] < 0) {
+          first[set] = x;
+        }
+      }
+    }
+    sets.reset();
+    for (int x = 0; x < this.width; x++) {
+      if (below[x] != 0) {
+        sets.union(first[label[x]], x);
+      }
+    }
+    for (int x = 0; x < this.width; x++) {
+      first[label[x]] = -1;
+    }
+  }
+}
+
+//represents a sink that writes rows to a stream at 4 bits per tile, two tiles
+//to a byte with the first in the low half, tiles running on across rows
+class NibbleSink implements RowSink {
+  OutputStream out;
+  // the wires of a tile waiting for a partner to share its byte, or -1
+  int pending;
+
+  NibbleSink(OutputStream out) {
+    this.out = out;
+    this.pending = -1;
+  }
+
+  //EFFECT: writes the row's wires to the stream
+  public void accept(int y, byte[] wires) {
+    try {
+      for (int x = 0; x < wires.length; x++) {
+        if (this.pending < 0) {
+          this.pending = wires[x];
+        } else {
+          this.out.write(this.pending | (wires[x] << 4));
+          this.pending = -1;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //EFFECT: writes the last tile if it is waiting for a partner, and flushes the stream
+  void finish() {
+    try {
+      if (this.pending >= 0) {
+        this.out.write(this.pending);
+        this.pending = -1;
+      }
+      this.out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+//examples class for testing
+class ExamplesRowGenerator {
+  PuzzleEngine engine;
+  RowGenerator generator;
+
+  //initialises an empty 7x5 game and a generator of the same size
+  void initData() {
+    this.engine = new PuzzleEngine(7, 5, new Random(3));
+    this.engine.initBoard();
+    this.generator = new RowGenerator(7, 5, new Random(3));
+  }
+
+  //test for generate
+  void testGenerate(Tester t) {
+    this.initData();
+    this.generator.generate(new BoardSink(this.engine.board));
+    // every tile is joined to the station by exactly one path
+    t.checkExpect(this.engine.board.matched, 34);
+    t.checkExpect(this.engine.board.dangling, 0);
+    t.checkExpect(this.engine.isSolved(), true);
+    t.checkExpect(this.engine.board.has(0, PackedBoard.STATION), true);
+    PackedBoard same = new PackedBoard(7, 5);
+    new RowGenerator(7, 5, new Random(3)).generate(new BoardSink(same));
+    t.checkExpect(same.wires(20), this.engine.board.wires(20));
+    // a single row or column can only be a line
+    PackedBoard line = new PackedBoard(1, 6);
+    new RowGenerator(1, 6, new Random(3)).generate(new BoardSink(line));
+    t.checkExpect(line.matched, 5);
+    PackedBoard across = new PackedBoard(6, 1);
+    new RowGenerator(6, 1, new Random(3)).generate(new BoardSink(across));
+    t.checkExpect(across.matched, 5);
+    t.checkExpect(across.dangling, 0);
+  }
+
+  //test for joinAcross
+  void testJoinAcross(Tester t) {
+    this.initData();
+    byte[] row = new byte[7];
+    DisjointSet sets = new DisjointSet(7);
+    sets.union(2, 3);
+    this.generator.joinAcross(row, sets, true);
+    // tiles already joined are not joined again
+    t.checkExpect(row, new byte[] {4, 5, 1, 4, 5, 5, 1});
+    t.checkExpect(sets.sets, 1);
+  }
+
+  //test for joinDown
+  void testJoinDown(Tester t) {
+    this.initData();
+    byte[] row = new byte[7];
+    byte[] below = new byte[7];
+    int[] label = new int[7];
+    int[] remaining = new int[7];
+    int[] first = new int[] {-1, -1, -1, -1, -1, -1, -1};
+    DisjointSet sets = new DisjointSet(7);
+    for (int x = 0; x < 6; x++) {
+      sets.union(x, x + 1);
+    }
+    this.generator.joinDown(row, below, sets, label, remaining, first);
+    int down = 0;
+    for (int x = 0; x < 7; x++) {
+      t.checkExpect(row[x] == PackedBoard.BOTTOM, below[x] == PackedBoard.TOP);
+      down += below[x] / PackedBoard.TOP;
+    }
+    // the one set goes down at least once, and stays one set below
+    t.checkExpect(down > 0, true);
+    t.checkExpect(sets.sets, 7 - down + 1);
+    t.checkExpect(first, new int[] {-1, -1, -1, -1, -1, -1, -1});
+  }
+
+  //test for NibbleSink's accept and finish
+  void testNibbleSink(Tester t) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    NibbleSink sink = new NibbleSink(bytes);
+    sink.accept(0, new byte[] {1, 2, 4});
+    t.checkExpect(bytes.toByteArray(), new byte[] {0x21});
+    sink.accept(1, new byte[] {8, 15, 3});
+    t.checkExpect(bytes.toByteArray(), new byte[] {0x21, (byte) 0x84, 0x3F});
+    sink.finish();
+    t.checkExpect(bytes.toByteArray(), new byte[] {0x21, (byte) 0x84, 0x3F});
+    sink.accept(2, new byte[] {5});
+    sink.finish();
+    t.checkExpect(bytes.toByteArray(), new byte[] {0x21, (byte) 0x84, 0x3F, 5});
+  }
+}
@@ -0,0 +1,6 @@
+//represents somewhere the rows of a generated board are written, top to bottom
+interface RowSink {
+  //takes the wires of the tiles in row y of the board, from left to right;
+  //the array is reused for the next row once this returns
+  void accept(int y, byte[] wires);
+}
@@ -0,0 +1,85 @@
+import tester.*;
+import java.awt.Color;
+import javalib.worldimages.*;
+
+//represents a cache of tile images, one for every combination of
+//connection bits, power and station, shared by every tile that looks the same
+class TileSprites {
+  // the wires, station and powered bits of a PackedBoard tile
+  static final int KEYS = 64;
+
+  // the tile size and wire width the cached images were drawn at
+  int size;
+  int wireWidth;
+  // the cached images, indexed by tile bits; null until first drawn
+  WorldImage[] sprites;
+
+  TileSprites(int size, int wireWidth) {
+    this.size = size;
+    this.wireWidth = wireWidth;
+    this.sprites = new WorldImage[KEYS];
+  }
+
+  //EFFECT: drops every cached image if the tile size or wire width changed
+  void resize(int size, int wireWidth) {
+    if (size != this.size || wireWidth != this.wireWidth) {
+      this.size = size;
+      this.wireWidth = wireWidth;
+      this.sprites = new WorldImage[KEYS];
+    }
+  }
+
+  //returns the image for a tile with the given PackedBoard bits
+  //EFFECT: draws and caches the image the first time it is needed
+  WorldImage sprite(int cell) {
+    int key = cell & (KEYS - 1);
+    if (this.sprites[key] == null) {
+      GamePiece piece = new GamePiece(0, 0,
+          (key & PackedBoard.LEFT) != 0,
+          (key & PackedBoard.RIGHT) != 0,
+          (key & PackedBoard.TOP) != 0,
+          (key & PackedBoard.BOTTOM) != 0,
+          (key & PackedBoard.STATION) != 0,
+          (key & PackedBoard.POWERED) != 0);
+      this.sprites[key] = piece.tileImage(
+          this.size, this.wireWidth, piece.wireColor(), piece.powerStation);
+    }
+    return this.sprites[key];
+  }
+}
+
+//examples class for testing
+class ExamplesTileSprites {
+  TileSprites sprites;
+
+  //initialises data
+  void initData() {
+    this.sprites = new TileSprites(30, 3);
+  }
+
+  //test for sprite
+  void testSprite(Tester t) {
+    this.initData();
+    GamePiece piece = new GamePiece(0, 0, true, false, true, false, true, true);
+    int cell = PackedBoard.LEFT | PackedBoard.TOP | PackedBoard.STATION | PackedBoard.POWERED;
+    t.checkExpect(this.sprites.sprite(cell),
+        piece.tileImage(30, 3, new Color(255, 0, 0), true));
+    // the same image is handed out every time
+    t.checkExpect(this.sprites.sprite(cell) == this.sprites.sprite(cell), true);
+    t.checkExpect(this.sprites.sprites[cell] == null, false);
+    t.checkExpect(this.sprites.sprites[PackedBoard.LEFT] == null, true);
+  }
+
+  //test for resize
+  void testResize(Tester t) {
+    this.initData();
+    WorldImage before = this.sprites.sprite(PackedBoard.RIGHT);
+    this.sprites.resize(30, 3);
+    t.checkExpect(this.sprites.sprite(PackedBoard.RIGHT) == before, true);
+    this.sprites.resize(20, 2);
+    t.checkExpect(this.sprites.sprite(PackedBoard.RIGHT) == before, false);
+    t.checkExpect(this.sprites.sprite(PackedBoard.RIGHT),
+        new GamePiece(0, 0, false, true, false, false, false, false)
+            .tileImage(20, 2, new Color(0, 255, 0), false));
+  }
+}
@@ -0,0 +1,352 @@
+import tester.*;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//represents a way of choosing a random spanning tree of a board's grid,
+//whose edges visualiseConnections turns into wires
+interface TreeGenerator {
+  //adds the edges of a random spanning tree of the board's grid to the tree,
+  //each from its left or top tile to its right or bottom one
+  void build(PackedBoard board, Random rand, GridEdges tree);
+}
+
+//represents Prim's algorithm over randomly weighted edges: the tree grows
+//from a random tile, always by the lightest edge leaving it, which keeps
+//the work near the tiles most recently added
+class PrimGenerator implements TreeGenerator {
+
+  //grows a minimum spanning tree from a random tile, weighting each edge
+  //when the tree first reaches one of its ends
+  //EFFECT: Adds Edges into the tree
+  public void build(PackedBoard board, Random rand, GridEdges tree) {
+    int n = board.cells.length;
+    boolean[] inTree = new boolean[n];
+    // the tree tile each waiting tile would be joined through
+    int[] via = new int[n];
+    IndexedHeap frontier = new IndexedHeap(n);
+    int start = rand.nextInt(n);
+    via[start] = -1;
+    frontier.offer(start, 0);
+    while (!frontier.isEmpty()) {
+      int tile = frontier.poll();
+      inTree[tile] = true;
+      if (via[tile] >= 0) {
+        tree.add(Math.min(tile, via[tile]), Math.max(tile, via[tile]), frontier.key[tile]);
+      }
+      for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+        int other = board.neighbour(tile, dir);
+        if (other >= 0 && !inTree[other]) {
+          int weight = rand.nextInt(GridEdges.MAX_WEIGHT);
+          if (!frontier.contains(other) || weight < frontier.key[other]) {
+            frontier.offer(other, weight);
+            via[other] = tile;
+          }
+        }
+      }
+    }
+  }
+}
+
+//represents Wilson's algorithm: random walks from each tile outside the
+//tree until they hit it, keeping each walk with its loops erased, which
+//picks every spanning tree of the grid with the same probability
+class WilsonGenerator implements TreeGenerator {
+
+  //returns a random neighbour of the tile: counts the neighbours, picks one
+  //by its number, then walks the directions again to find it
+  int randomNeighbour(PackedBoard board, Random rand, int tile) {
+    int count = 0;
+    for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+      if (board.neighbour(tile, dir) >= 0) {
+        count += 1;
+      }
+    }
+    int pick = rand.nextInt(count);
+    for (int dir = 1; dir <= PackedBoard.BOTTOM; dir <<= 1) {
+      int other = board.neighbour(tile, dir);
+      if (other >= 0) {
+        if (pick == 0) {
+          return other;
+        }
+        pick -= 1;
+      }
+    }
+    throw new IllegalStateException("tile " + tile + " has no neighbours");
+  }
+
+  //grows a uniform spanning tree from a random tile by loop-erased walks;
+  //the edges are not weighted and are added with weight 0
+  //EFFECT: Adds Edges into the tree
+  public void build(PackedBoard board, Random rand, GridEdges tree) {
+    int n = board.cells.length;
+    boolean[] inTree = new boolean[n];
+    // the step each walk last took out of each tile; stepping over a tile
+    // again replaces its step, which erases the loop in between
+    int[] next = new int[n];
+    inTree[rand.nextInt(n)] = true;
+    for (int start = 0; start < n; start++) {
+      for (int tile = start; !inTree[tile]; tile = next[tile]) {
+        next[tile] = this.randomNeighbour(board, rand, tile);
+      }
+      for (int tile = start; !inTree[tile]; tile = next[tile]) {
+        inTree[tile] = true;
+        tree.add(Math.min(tile, next[tile]), Math.max(tile, next[tile]), 0);
+      }
+    }
+  }
+}
+
+//represents Boruvka's algorithm over randomly weighted edges: in each round
+//every group of joined tiles picks its lightest edge out, and the picks are
+//all joined at once; the search for picks is split over a fork-join pool
+class BoruvkaGenerator implements TreeGenerator {
+  // boards with fewer tiles than this are searched by one task
+  static final int STRIPE = 1 << 14;
+
+  ForkJoinPool pool;
+  // the seed the edge weights are derived from, drawn once per build
+  long seed;
+
+  BoruvkaGenerator(ForkJoinPool pool) {
+    this.pool = pool;
+    this.seed = 0;
+  }
+
+  //returns the weight of the edge with the given number, from 0 to
+  //GridEdges.MAX_WEIGHT - 1, derived from the seed so any thread
+  //can compute it without sharing a Random
+  int weight(int edge) {
+    long z = this.seed + (edge + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    return (int) ((z >>> 1) % GridEdges.MAX_WEIGHT);
+  }
+
+  //returns the order of the edge with the given number: by weight, and by
+  //number between edges of the same weight, so no two edges tie
+  long rank(int edge) {
+    return ((long) this.weight(edge) << 32) | edge;
+  }
+
+  //returns the tile at the far end of the edge with the given number, where
+  //edge 2i is the one right of tile i and edge 2i + 1 the one below it
+  int far(PackedBoard board, int edge) {
+    return (edge & 1) == 0 ? (edge >> 1) + 1 : (edge >> 1) + board.width;
+  }
+
+  //joins groups of tiles by their lightest edges out until one group is left
+  //EFFECT: Adds Edges into the tree
+  public void build(PackedBoard board, Random rand, GridEdges tree) {
+    int n = board.cells.length;
+    this.seed = rand.nextLong();
+    DisjointSet groups = new DisjointSet(n);
+    int[] label = new int[n];
+    AtomicLongArray lightest = new AtomicLongArray(n);
+    while (groups.sets > 1) {
+      for (int i = 0; i < n; i++) {
+        label[i] = groups.find(i);
+        lightest.set(i, Long.MAX_VALUE);
+      }
+      this.pool.invoke(new LightestEdges(this, board, label, lightest, 0, n));
+      for (int i = 0; i < n; i++) {
+        long best = lightest.get(i);
+        if (best != Long.MAX_VALUE) {
+          int edge = (int) best;
+          int from = edge >> 1;
+          int to = this.far(board, edge);
+          if (groups.union(from, to)) {
+            tree.add(from, to, (int) (best >>> 32));
+          }
+        }
+      }
+    }
+  }
+}
+
+//represents the search of a range of tiles for the lightest edge out of
+//each group, splitting itself in half until the range is one stripe
+class LightestEdges extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+
+  BoruvkaGenerator generator;
+  PackedBoard board;
+  // the group of each tile, and the rank of each group's lightest edge out so far
+  int[] label;
+  AtomicLongArray lightest;
+  int start;
+  int end;
+
+  LightestEdges(BoruvkaGenerator generator, PackedBoard board, int[] label,
+      AtomicLongArray lightest, int start, int end) {
+    this.generator = generator;
+    this.board = board;
+    this.label = label;
+    this.lightest = lightest;
+    this.start = start;
+    this.end = end;
+  }
+
+  //EFFECT: lowers the lightest edge of both groups at the ends of every
+  //        edge right of or below the tiles in the range
+  protected void compute() {
+    if (this.end - this.start > BoruvkaGenerator.STRIPE) {
+      int middle = (this.start + this.end) >>> 1;
+      invokeAll(
+          new LightestEdges(this.generator, this.board, this.label, this.lightest,
+              this.start, middle),
+          new LightestEdges(this.generator, this.board, this.label, this.lightest,
+              middle, this.end));
+      return;
+    }
+    for (int tile = this.start; tile < this.end; tile++) {
+      int right = this.board.neighbour(tile, PackedBoard.RIGHT);
+      int below = this.board.neighbour(tile, PackedBoard.BOTTOM);
+      if (right >= 0 && this.label[tile] != this.label[right]) {
+        this.offer(2 * tile, tile, right);
+      }
+      if (below >= 0 && this.label[tile] != this.label[below]) {
+        this.offer(2 * tile + 1, tile, below);
+      }
+    }
+  }
+
+  //EFFECT: makes the edge the lightest out of both its groups,
+  //        unless they already have lighter ones
+  void offer(int edge, int from, int to) {
+    long rank = this.generator.rank(edge);
+    this.lightest.accumulateAndGet(this.label[from], rank, Math::min);
+    this.lightest.accumulateAndGet(this.label[to], rank, Math::min);
+  }
+}
+
+//examples class for testing
+class ExamplesTreeGenerator {
+  PackedBoard board;
+  ForkJoinPool pool;
+
+  //initialises a 7x5 board and a pool of two threads
+  void initData() {
+    this.board = new PackedBoard(7, 5);
+    this.pool = new ForkJoinPool(2);
+  }
+
+  //checks that the edges form a spanning tree of the board's grid,
+  //from left or top ends to right or bottom ends
+  void checkTree(Tester t, PackedBoard b, GridEdges tree) {
+    t.checkExpect(tree.size, b.cells.length - 1);
+    DisjointSet joined = new DisjointSet(b.cells.length);
+    boolean valid = true;
+    for (int i = 0; i < tree.size; i++) {
+      int from = tree.from[i];
+      int to = tree.to[i];
+      valid = valid && (to == b.neighbour(from, PackedBoard.RIGHT)
+          || to == b.neighbour(from, PackedBoard.BOTTOM))
+          && joined.union(from, to)
+          && tree.weight[i] >= 0 && tree.weight[i] < GridEdges.MAX_WEIGHT;
+    }
+    t.checkExpect(valid, true);
+    t.checkExpect(joined.sets, 1);
+  }
+
+  //test for KruskalGenerator's build
+  void testKruskal(Tester t) {
+    this.initData();
+    GridEdges tree = new GridEdges(34);
+    new KruskalGenerator().build(this.board, new Random(4), tree);
+    this.checkTree(t, this.board, tree);
+  }
+
+  //test for PrimGenerator's build
+  void testPrim(Tester t) {
+    this.initData();
+    GridEdges tree = new GridEdges(34);
+    new PrimGenerator().build(this.board, new Random(4), tree);
+    this.checkTree(t, this.board, tree);
+    GridEdges again = new GridEdges(34);
+    new PrimGenerator().build(this.board, new Random(4), again);
+    t.checkExpect(again.from, tree.from);
+    GridEdges single = new GridEdges(0);
+    new PrimGenerator().build(new PackedBoard(1, 1), new Random(4), single);
+    t.checkExpect(single.size, 0);
+  }
+
+  //test for WilsonGenerator's randomNeighbour and build
+  void testWilson(Tester t) {
+    this.initData();
+    Random rand = new Random(4);
+    WilsonGenerator wilson = new WilsonGenerator();
+    int corner = wilson.randomNeighbour(this.board, rand, 0);
+    t.checkExpect(corner == 1 || corner == 7, true);
+    int picked = 0;
+    for (int i = 0; i < 64; i++) {
+      int other = wilson.randomNeighbour(this.board, rand, 8);
+      picked |= other == 7 ? 1 : other == 1 ? 2 : other == 9 ? 4 : other == 15 ? 8 : 16;
+    }
+    t.checkExpect(picked, 15);
+    GridEdges tree = new GridEdges(34);
+    wilson.build(this.board, rand, tree);
+    this.checkTree(t, this.board, tree);
+    GridEdges line = new GridEdges(5);
+    wilson.build(new PackedBoard(6, 1), rand, line);
+    t.checkExpect(line.size, 5);
+  }
+
+  //test for BoruvkaGenerator's weight, rank and far
+  void testBoruvkaEdges(Tester t) {
+    this.initData();
+    BoruvkaGenerator boruvka = new BoruvkaGenerator(this.pool);
+    t.checkExpect(boruvka.weight(3) >= 0 && boruvka.weight(3) < GridEdges.MAX_WEIGHT, true);
+    // the weights depend only on the seed, so any generator with it agrees
+    BoruvkaGenerator same = new BoruvkaGenerator(this.pool);
+    boruvka.seed = 42;
+    same.seed = 42;
+    t.checkExpect(boruvka.weight(3), 32);
+    t.checkExpect(same.weight(3), boruvka.weight(3));
+    t.checkExpect(same.weight(4), 25);
+    t.checkExpect(boruvka.rank(3) == boruvka.rank(5), false);
+    t.checkExpect((int) boruvka.rank(5), 5);
+    t.checkExpect(boruvka.far(this.board, 6), 4);
+    t.checkExpect(boruvka.far(this.board, 7), 10);
+    this.pool.shutdown();
+  }
+
+  //test for BoruvkaGenerator's build and LightestEdges
+  void testBoruvka(Tester t) {
+    this.initData();
+    GridEdges tree = new GridEdges(34);
+    new BoruvkaGenerator(this.pool).build(this.board, new Random(4), tree);
+    this.checkTree(t, this.board, tree);
+    // the tree is the same when the search is split over many tasks
+    PackedBoard big = new PackedBoard(300, 120);
+    GridEdges bigTree = new GridEdges(big.cells.length - 1);
+    new BoruvkaGenerator(this.pool).build(big, new Random(4), bigTree);
+    this.checkTree(t, big, bigTree);
+    GridEdges alone = new GridEdges(big.cells.length - 1);
+    ForkJoinPool single = new ForkJoinPool(1);
+    new BoruvkaGenerator(single).build(big, new Random(4), alone);
+    t.checkExpect(alone.from, bigTree.from);
+    t.checkExpect(alone.to, bigTree.to);
+    single.shutdown();
+    this.pool.shutdown();
+  }
+
+  //test for generating a whole puzzle with each generator
+  void testEngines(Tester t) {
+    this.initData();
+    TreeGenerator[] generators = new TreeGenerator[] {new KruskalGenerator(),
+        new PrimGenerator(), new WilsonGenerator(), new BoruvkaGenerator(this.pool)};
+    for (TreeGenerator generator : generators) {
+      PuzzleEngine engine = new PuzzleEngine(6, 6, new Random(9), generator);
+      engine.initBoard();
+      engine.buildMST(engine.board);
+      engine.visualiseConnections();
+      t.checkExpect(engine.board.matched, 35);
+      t.checkExpect(engine.board.dangling, 0);
+      t.checkExpect(engine.isSolved(), true);
+    }
+    this.pool.shutdown();
+  }
+}
@@ -0,0 +1,159 @@
+import tester.*;
+
+//represents the part of a board that is visible in the window,
+//as a scroll offset in tiles and a zoom level in pixels per tile
+class Viewport {
+  // the smallest and largest tile sizes, and the change per zoom step;
+  // all tile sizes are even so tiles can be placed by their centres
+  static final int MIN_TILE = 6;
+  static final int MAX_TILE = 60;
+  static final int ZOOM_STEP = 6;
+
+  // the size of the board in tiles
+  int boardWidth;
+  int boardHeight;
+  // the size of the window in pixels
+  int windowWidth;
+  int windowHeight;
+  // the size of a tile in pixels
+  int tileSize;
+  // the row and column of the tile in the top-left corner of the window
+  int row;
+  int col;
+
+  Viewport(int boardWidth, int boardHeight, int windowWidth, int windowHeight, int tileSize) {
+    this.boardWidth = boardWidth;
+    this.boardHeight = boardHeight;
+    this.windowWidth = windowWidth;
+    this.windowHeight = windowHeight;
+    this.tileSize = tileSize;
+    this.row = 0;
+    this.col = 0;
+  }
+
+  //returns the width of wires at the current zoom level
+  int wireWidth() {
+    return Math.max(1, this.tileSize / 10);
+  }
+
+  //returns the number of rows of tiles at least partly in the window
+  int visibleRows() {
+    return Math.min(this.boardWidth - this.row,
+        (this.windowWidth + this.tileSize - 1) / this.tileSize);
+  }
+
+  //returns the number of columns of tiles at least partly in the window
+  int visibleCols() {
+    return Math.min(this.boardHeight - this.col,
+        (this.windowHeight + this.tileSize - 1) / this.tileSize);
+  }
+
+  //returns the number of tiles to scroll by, half a window across
+  int scrollStep() {
+    return Math.max(1, this.windowWidth / this.tileSize / 2);
+  }
+
+  //moves the window by the given number of tiles, without leaving the board
+  //EFFECT: updates row and col
+  void scroll(int rows, int cols) {
+    int maxRow = Math.max(0, this.boardWidth - this.windowWidth / this.tileSize);
+    int maxCol = Math.max(0, this.boardHeight - this.windowHeight / this.tileSize);
+    this.row = Math.max(0, Math.min(maxRow, this.row + rows));
+    this.col = Math.max(0, Math.min(maxCol, this.col + cols));
+  }
+
+  //zooms in (positive steps) or out (negative steps), keeping the tile
+  //in the centre of the window in the centre
+  //EFFECT: updates tileSize, row and col
+  void zoom(int steps) {
+    int centreRow = this.row + this.windowWidth / this.tileSize / 2;
+    int centreCol = this.col + this.windowHeight / this.tileSize / 2;
+    this.tileSize = Math.max(MIN_TILE, Math.min(MAX_TILE, this.tileSize + steps * ZOOM_STEP));
+    this.row = centreRow - this.windowWidth / this.tileSize / 2;
+    this.col = centreCol - this.windowHeight / this.tileSize / 2;
+    this.scroll(0, 0);
+  }
+
+  //returns the index of the tile under the given window pixel,
+  //or -1 if there is no tile there
+  int tileAt(PackedBoard board, int x, int y) {
+    if (x < 0 || y < 0 || x >= this.windowWidth || y >= this.windowHeight) {
+      return -1;
+    }
+    int r = this.row + x / this.tileSize;
+    int c = this.col + y / this.tileSize;
+    if (r >= this.boardWidth || c >= this.boardHeight) {
+      return -1;
+    }
+    return board.index(r, c);
+  }
+}
+
+//examples class for testing
+class ExamplesViewport {
+  Viewport view;
+  PackedBoard board;
+
+  //initialises a 300x200 window over a 100x50 board of 30 pixel tiles
+  void initData() {
+    this.view = new Viewport(100, 50, 300, 200, 30);
+    this.board = new PackedBoard(100, 50);
+  }
+
+  //test for wireWidth
+  void testWireWidth(Tester t) {
+    this.initData();
+    t.checkExpect(this.view.wireWidth(), 3);
+    this.view.tileSize = 6;
+    t.checkExpect(this.view.wireWidth(), 1);
+  }
+
+  //test for visibleRows and visibleCols
+  void testVisible(Tester t) {
+    this.initData();
+    t.checkExpect(this.view.visibleRows(), 10);
+    t.checkExpect(this.view.visibleCols(), 7);
+    this.view.row = 95;
+    t.checkExpect(this.view.visibleRows(), 5);
+  }
+
+  //test for scrollStep and scroll
+  void testScroll(Tester t) {
+    this.initData();
+    t.checkExpect(this.view.scrollStep(), 5);
+    this.view.scroll(5, 3);
+    t.checkExpect(this.view.row, 5);
+    t.checkExpect(this.view.col, 3);
+    this.view.scroll(-10, 1000);
+    t.checkExpect(this.view.row, 0);
+    t.checkExpect(this.view.col, 44);
+  }
+
+  //test for zoom
+  void testZoom(Tester t) {
+    this.initData();
+    this.view.scroll(20, 10);
+    this.view.zoom(-4);
+    t.checkExpect(this.view.tileSize, 6);
+    t.checkExpect(this.view.row, 0);
+    t.checkExpect(this.view.col, 0);
+    this.view.zoom(100);
+    t.checkExpect(this.view.tileSize, 60);
+    t.checkExpect(this.view.row, 23);
+    t.checkExpect(this.view.col, 15);
+  }
+
+  //test for tileAt
+  void testTileAt(Tester t) {
+    this.initData();
+    t.checkExpect(this.view.tileAt(this.board, 31, 1), 1);
+    t.checkExpect(this.view.tileAt(this.board, 0, 60), 200);
+    t.checkExpect(this.view.tileAt(this.board, 300, 1), -1);
+    t.checkExpect(this.view.tileAt(this.board, -1, 1), -1);
+    this.view.scroll(2, 1);
+    t.checkExpect(this.view.tileAt(this.board, 31, 1), 103);
+    PackedBoard small = new PackedBoard(2, 2);
+    Viewport wide = new Viewport(2, 2, 300, 200, 30);
+    t.checkExpect(wide.tileAt(small, 100, 10), -1);
+  }
+}